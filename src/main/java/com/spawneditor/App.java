@@ -4,21 +4,38 @@ import com.formdev.flatlaf.FlatDarkLaf;
 import com.spawneditor.controller.EditorController;
 import com.spawneditor.io.DynamicNpcStore;
 import com.spawneditor.io.JsonStore;
+import com.spawneditor.io.LoadProgress;
 import com.spawneditor.io.NpcIndex;
 import com.spawneditor.io.ObjectIndex;
 import com.spawneditor.io.Paths;
+import com.spawneditor.io.SnapshotCache;
 import com.spawneditor.model.SpawnProject;
 import com.spawneditor.rpc.DiscordPresence;
 import com.spawneditor.util.Images;
 import com.spawneditor.util.Ui;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class App {
+    private static final int LOADER_THREADS = Math.max(2, Math.min(5, Runtime.getRuntime().availableProcessors()));
+
     public static void main(String[] args) {
         if (args.length >= 1) Paths.SPAWNS_JSON = args[0];
         if (args.length >= 2) Paths.MAP_IMAGE = args[1];
@@ -50,42 +67,78 @@ public class App {
                 return;
             }
             new SwingWorker<EditorBits, Integer>() {
+                // loaded side by side; the bar follows the spawns and map, which the editor waits for
                 @Override
-                protected EditorBits doInBackground() {
+                protected EditorBits doInBackground() throws Exception {
                     setProgress(0);
                     splash.setProgress(0, "Preparing folders…");
                     File jsonFile = new File(Paths.SPAWNS_JSON);
                     File parent = jsonFile.getParentFile();
                     if (parent != null) parent.mkdirs();
-                    int step = 0;
-                    int total = 5;
+                    File objectsFile = new File(Paths.OBJECTS_JSON);
+                    File npcsFile = new File(Paths.NPCS_JSON);
+                    File dynamicFile = new File(Paths.DYNAMIC_NPCS_TXT);
+                    File mapFile = new File(Paths.MAP_IMAGE);
                     SpawnProject project = new SpawnProject();
+                    SnapshotCache cache = SnapshotCache.open();
                     JsonStore store = new JsonStore(Paths.SPAWNS_JSON);
-                    splash.setProgress(pct(++step, total), "Loading spawns…");
-                    store.loadInto(project);
+                    store.setJournaled(Paths.JOURNAL_SPAWNS);
                     ObjectIndex objectIndex = new ObjectIndex(Paths.OBJECTS_JSON);
-                    splash.setProgress(pct(++step, total), "Loading objects…");
-                    objectIndex.load();
                     NpcIndex npcIndex = new NpcIndex(Paths.NPCS_JSON);
-                    splash.setProgress(pct(++step, total), "Loading NPCs…");
-                    npcIndex.load();
                     DynamicNpcStore dynStore = new DynamicNpcStore(Paths.DYNAMIC_NPCS_TXT, npcIndex::nameFor);
-                    splash.setProgress(pct(++step, total), "Loading dynamic NPCs…");
-                    dynStore.load();
-                    splash.setProgress(pct(++step, total), "Starting editor…");
-                    return new EditorBits(project, objectIndex, npcIndex, dynStore, presence);
-                }
-                private int pct(int step, int total) {
-                    int p = (int)Math.floor((step * 100.0) / total);
-                    return Math.max(0, Math.min(99, p));
+                    Set<String> pending = Collections.synchronizedSet(new LinkedHashSet<>());
+                    LoadProgress progress = new LoadProgress(pct -> splash.setProgress(Math.min(99, pct), loadingMessage(pending)));
+                    for (File f : new File[] {jsonFile, dynamicFile, mapFile}) progress.expect(f);
+                    ExecutorService loaders = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+                        Thread t = new Thread(r, "spawn-editor-loader");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    BufferedImage map;
+                    List<CompletableFuture<?>> names = new ArrayList<>();
+                    try {
+                        List<CompletableFuture<?>> loads = new ArrayList<>();
+                        loads.add(submit(loaders, progress, pending, "spawns", jsonFile, () -> {
+                            store.loadInto(project, cache, progress);
+                            return null;
+                        }));
+                        names.add(submit(loaders, progress, pending, "objects", objectsFile, () -> {
+                            objectIndex.load(cache, progress);
+                            return null;
+                        }));
+                        names.add(submit(loaders, progress, pending, "NPCs", npcsFile, () -> {
+                            npcIndex.load(cache, progress);
+                            return null;
+                        }));
+                        loads.add(submit(loaders, progress, pending, "dynamic NPCs", dynamicFile, () -> {
+                            dynStore.load(cache, progress);
+                            return null;
+                        }));
+                        CompletableFuture<BufferedImage> mapLoad = submit(loaders, progress, pending, "map", mapFile, () -> readMap(mapFile, progress));
+                        for (CompletableFuture<?> load : loads) load.get();
+                        map = mapLoad.get();
+                    } finally {
+                        // queued and running name loads still finish
+                        loaders.shutdown();
+                    }
+                    splash.setProgress(99, "Starting editor…");
+                    SnapshotCache.PendingSave save = cache.capture(store, project, dynStore);
+                    CompletableFuture.allOf(names.toArray(new CompletableFuture<?>[0]))
+                            .whenComplete((ok, ex) -> save.finish(objectIndex, npcIndex));
+                    return new EditorBits(project, store, objectIndex, npcIndex, dynStore, map, names, presence);
                 }
                 @Override
                 protected void done() {
                     try {
                         splash.setProgress(100, "Done");
                         EditorBits bits = get();
-                        EditorController controller = new EditorController(bits.project, bits.objectIndex, bits.npcIndex, bits.dynStore, bits.presence);
+                        EditorController controller = new EditorController(bits.project, bits.store, bits.objectIndex, bits.npcIndex, bits.dynStore, bits.presence);
+                        controller.setMapImage(bits.map);
                         controller.show();
+                        // a list that is already in still gets its call, in case it beat show()
+                        for (CompletableFuture<?> list : bits.names) {
+                            list.whenComplete((ok, ex) -> EventQueue.invokeLater(controller::namesLoaded));
+                        }
                     } catch (Exception ex) {
                         Ui.error("Failed to start: " + ex.getMessage());
                         try {
@@ -106,6 +159,43 @@ public class App {
         });
     }
 
+    private static <T> CompletableFuture<T> submit(ExecutorService loaders, LoadProgress progress, Set<String> pending, String what, File file, Callable<T> task) {
+        pending.add(what);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        loaders.execute(() -> {
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = task.call();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                pending.remove(what);
+                progress.done(file);
+            }
+            if (failure != null) result.completeExceptionally(failure);
+            else result.complete(value);
+        });
+        return result;
+    }
+
+    private static String loadingMessage(Set<String> pending) {
+        synchronized (pending) {
+            return pending.isEmpty() ? "Starting editor…" : "Loading " + String.join(", ", pending) + "…";
+        }
+    }
+
+    // null on failure; the editor then reads the map itself and reports the error
+    private static BufferedImage readMap(File f, LoadProgress progress) {
+        if (!f.isFile()) return null;
+        // ImageIO.read closes the image stream itself
+        try (InputStream in = new BufferedInputStream(progress.open(f), 1 << 16)) {
+            return ImageIO.read(new MemoryCacheImageInputStream(in));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
     private static void ensurePathsOrPrompt(Window owner){
         com.spawneditor.io.PathsConfig.applyToPaths(com.spawneditor.io.PathsConfig.loadOrNull());
         com.spawneditor.view.PathsDialog dlg = new com.spawneditor.view.PathsDialog(owner);
@@ -116,12 +206,15 @@ public class App {
 
     private static final class EditorBits {
         final SpawnProject project;
+        final JsonStore store;
         final ObjectIndex objectIndex;
         final NpcIndex npcIndex;
         final DynamicNpcStore dynStore;
+        final BufferedImage map;
+        final List<CompletableFuture<?>> names;
         final DiscordPresence presence;
-        EditorBits(SpawnProject p, ObjectIndex oi, NpcIndex ni, DynamicNpcStore ds, DiscordPresence pr) {
-            this.project = p; this.objectIndex = oi; this.npcIndex = ni; this.dynStore = ds; this.presence = pr;
+        EditorBits(SpawnProject p, JsonStore js, ObjectIndex oi, NpcIndex ni, DynamicNpcStore ds, BufferedImage map, List<CompletableFuture<?>> names, DiscordPresence pr) {
+            this.project = p; this.store = js; this.objectIndex = oi; this.npcIndex = ni; this.dynStore = ds; this.map = map; this.names = names; this.presence = pr;
         }
     }
 
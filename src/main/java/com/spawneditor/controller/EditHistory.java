@@ -0,0 +1,289 @@
+package com.spawneditor.controller;
+
+import com.spawneditor.io.DynamicNpcStore;
+import com.spawneditor.model.DynamicNpcEntry;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.Tile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// undo/redo as a log of edits, each holding only the values it changed
+final class EditHistory {
+    private static final int LIMIT = 1000;
+
+    interface Target {
+        void upsert(SpawnEntry e);
+        void append(SpawnEntry e);
+        void delete(SpawnEntry e);
+        DynamicNpcStore dynamics();
+        void beginBatch();
+        void commit();
+    }
+
+    private interface Op {
+        void undo(Target t);
+        void redo(Target t);
+        Tile tile();
+
+        default Ref ref() {
+            return null;
+        }
+    }
+
+    // a dynamic NPC re-created by undo/redo is a new object; its ops share a Ref to follow it
+    private static final class Ref {
+        DynamicNpcEntry entry;
+        int uses; // ops still in either stack
+    }
+
+    private final Deque<List<Op>> undo = new ArrayDeque<>();
+    private final Deque<List<Op>> redo = new ArrayDeque<>();
+    private final Map<DynamicNpcEntry, Ref> refs = new IdentityHashMap<>();
+    private List<Op> group;
+    private int groupDepth;
+
+    boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    void clear() {
+        undo.clear();
+        redo.clear();
+        refs.clear();
+        group = null;
+        groupDepth = 0;
+    }
+
+    // steps touching a dynamic NPC that was removed outside the editor can't be replayed; the rest stay
+    void forget(Collection<DynamicNpcEntry> gone) {
+        Set<Ref> stale = new HashSet<>();
+        for (DynamicNpcEntry e : gone) {
+            Ref r = refs.get(e);
+            if (r != null) stale.add(r);
+        }
+        if (!stale.isEmpty()) forgetIf(op -> stale.contains(op.ref()));
+    }
+
+    // once the spawns are a read-only dump, steps editing them can't be replayed
+    void forgetSpawns() {
+        forgetIf(op -> op.ref() == null);
+    }
+
+    private void forgetIf(Predicate<Op> stale) {
+        for (Deque<List<Op>> stack : List.of(undo, redo)) {
+            stack.removeIf(step -> {
+                for (Op op : step) {
+                    if (stale.test(op)) {
+                        dropped(step);
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+    }
+
+    // edits recorded until the matching end() are undone and redone as one step
+    void begin() {
+        if (groupDepth++ == 0) group = new ArrayList<>();
+    }
+
+    void end() {
+        if (groupDepth == 0) throw new IllegalStateException("No group is open");
+        if (--groupDepth > 0) return;
+        List<Op> done = group;
+        group = null;
+        if (!done.isEmpty()) push(done);
+    }
+
+    // before is a copy of the entry the upsert replaced, or null when it added one
+    void spawnPut(SpawnEntry before, SpawnEntry after) {
+        record(new Op() {
+            @Override
+            public void undo(Target t) {
+                if (before == null) t.delete(after);
+                else t.upsert(before);
+            }
+            @Override
+            public void redo(Target t) {
+                t.upsert(after);
+            }
+            @Override
+            public Tile tile() {
+                return after.tile;
+            }
+        });
+    }
+
+    void spawnDeleted(SpawnEntry removed) {
+        record(new Op() {
+            @Override
+            public void undo(Target t) {
+                t.append(removed);
+            }
+            @Override
+            public void redo(Target t) {
+                t.delete(removed);
+            }
+            @Override
+            public Tile tile() {
+                return removed.tile;
+            }
+        });
+    }
+
+    // d already carries the new id and tile
+    void dynamicUpdated(DynamicNpcEntry d, int oldId, Tile oldTile) {
+        Ref ref = refFor(d);
+        int newId = d.id;
+        Tile newTile = d.toTile();
+        record(new Op() {
+            @Override
+            public void undo(Target t) {
+                t.dynamics().updateEntry(ref.entry, oldId, oldTile);
+            }
+            @Override
+            public void redo(Target t) {
+                t.dynamics().updateEntry(ref.entry, newId, newTile);
+            }
+            @Override
+            public Tile tile() {
+                return newTile;
+            }
+            @Override
+            public Ref ref() {
+                return ref;
+            }
+        });
+    }
+
+    void dynamicAdded(DynamicNpcEntry created) {
+        Ref ref = refFor(created);
+        int id = created.id;
+        Tile tile = created.toTile();
+        record(new Op() {
+            @Override
+            public void undo(Target t) {
+                t.dynamics().deleteEntry(ref.entry);
+            }
+            @Override
+            public void redo(Target t) {
+                repoint(ref, t.dynamics().appendEntry(id, tile));
+            }
+            @Override
+            public Tile tile() {
+                return tile;
+            }
+            @Override
+            public Ref ref() {
+                return ref;
+            }
+        });
+    }
+
+    void dynamicDeleted(DynamicNpcEntry removed) {
+        Ref ref = refFor(removed);
+        int id = removed.id;
+        Tile tile = removed.toTile();
+        record(new Op() {
+            @Override
+            public void undo(Target t) {
+                repoint(ref, t.dynamics().appendEntry(id, tile));
+            }
+            @Override
+            public void redo(Target t) {
+                t.dynamics().deleteEntry(ref.entry);
+            }
+            @Override
+            public Tile tile() {
+                return tile;
+            }
+            @Override
+            public Ref ref() {
+                return ref;
+            }
+        });
+    }
+
+    // the tile of the step's first edit, or null if there was nothing to undo
+    Tile undo(Target t) {
+        List<Op> step = undo.pollLast();
+        if (step == null) return null;
+        apply(t, step, true);
+        redo.addLast(step);
+        return step.get(0).tile();
+    }
+
+    Tile redo(Target t) {
+        List<Op> step = redo.pollLast();
+        if (step == null) return null;
+        apply(t, step, false);
+        undo.addLast(step);
+        return step.get(0).tile();
+    }
+
+    private void apply(Target t, List<Op> step, boolean backwards) {
+        boolean batch = step.size() > 1;
+        if (batch) t.beginBatch();
+        if (backwards) {
+            for (int i = step.size() - 1; i >= 0; i--) step.get(i).undo(t);
+        } else {
+            for (Op op : step) op.redo(t);
+        }
+        if (batch) t.commit();
+    }
+
+    private void record(Op op) {
+        if (group != null) {
+            group.add(op);
+            return;
+        }
+        List<Op> step = new ArrayList<>(1);
+        step.add(op);
+        push(step);
+    }
+
+    private void push(List<Op> step) {
+        undo.addLast(step);
+        if (undo.size() > LIMIT) dropped(undo.pollFirst());
+        redo.forEach(this::dropped);
+        redo.clear();
+    }
+
+    // refs no remaining op uses are forgotten
+    private void dropped(List<Op> step) {
+        for (Op op : step) {
+            Ref r = op.ref();
+            if (r != null && --r.uses == 0) refs.remove(r.entry, r);
+        }
+    }
+
+    private Ref refFor(DynamicNpcEntry d) {
+        Ref ref = refs.computeIfAbsent(d, k -> {
+            Ref r = new Ref();
+            r.entry = k;
+            return r;
+        });
+        ref.uses++;
+        return ref;
+    }
+
+    private void repoint(Ref ref, DynamicNpcEntry now) {
+        refs.remove(ref.entry);
+        ref.entry = now;
+        refs.put(now, ref);
+    }
+}
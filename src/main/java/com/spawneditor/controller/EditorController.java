@@ -2,11 +2,16 @@ package com.spawneditor.controller;
 
 import com.spawneditor.App;
 import com.spawneditor.io.DynamicNpcStore;
+import com.spawneditor.io.FileWatcher;
 import com.spawneditor.io.JsonStore;
 import com.spawneditor.io.NpcIndex;
 import com.spawneditor.io.ObjectIndex;
 import com.spawneditor.io.Paths;
+import com.spawneditor.io.PersistenceExecutor;
+import com.spawneditor.io.SnapshotCache;
+import com.spawneditor.io.SpawnDiff;
 import com.spawneditor.model.ActionType;
+import com.spawneditor.model.ChangeBus;
 import com.spawneditor.model.SpawnEntry;
 import com.spawneditor.model.SpawnProject;
 import com.spawneditor.model.Tile;
@@ -22,13 +27,20 @@ import com.spawneditor.rpc.DiscordPresence;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.text.JTextComponent;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class EditorController {
     private final SpawnProject project;
@@ -37,22 +49,68 @@ public class EditorController {
     private NpcIndex npcIndex;
     private DynamicNpcStore dynStore;
     private JsonStore jsonStore;
+    private FileWatcher watcher;
     private JFrame frame;
     private MapPanel mapPanel;
     private SidebarPanel sidebar;
     private ToolbarPanel toolbar;
     private SpawnListPanel spawnList;
     private BufferedImage appIcon = null;
+    private BufferedImage preloadedMap;
+    private final List<Runnable> unsubscribe = new ArrayList<>();
+    private final EditHistory history = new EditHistory();
+    private Validator validator;
+    // undo and redo replay edits through the same stores and model calls as the sidebar does
+    private final EditHistory.Target historyTarget = new EditHistory.Target() {
+        @Override
+        public void upsert(SpawnEntry e) {
+            jsonStore.upsertOne(e);
+            project.upsertLast(e);
+        }
+        @Override
+        public void append(SpawnEntry e) {
+            jsonStore.appendOne(e);
+            project.append(e);
+        }
+        @Override
+        public void delete(SpawnEntry e) {
+            if (jsonStore.deleteOne(e)) project.removeLast(e);
+        }
+        @Override
+        public DynamicNpcStore dynamics() {
+            return dynStore;
+        }
+        @Override
+        public void beginBatch() {
+            jsonStore.beginBatch();
+            dynStore.beginBatch();
+        }
+        @Override
+        public void commit() {
+            dynStore.commit();
+            jsonStore.commit();
+        }
+    };
 
-    public EditorController(SpawnProject project, ObjectIndex objectIndex, NpcIndex npcIndex, DynamicNpcStore dynStore, DiscordPresence presence) {
+    public EditorController(SpawnProject project, JsonStore jsonStore, ObjectIndex objectIndex, NpcIndex npcIndex, DynamicNpcStore dynStore, DiscordPresence presence) {
         this.project = project;
+        this.jsonStore = jsonStore;
         this.objectIndex = objectIndex;
         this.npcIndex = npcIndex;
         this.dynStore = dynStore;
         this.presence = presence;
     }
 
+    // a map image decoded during startup; the first buildUi uses it instead of reading the file
+    public void setMapImage(BufferedImage image) {
+        this.preloadedMap = image;
+    }
+
     public void show() {
+        if (jsonStore == null) {
+            openJsonStore();
+            refreshAll(null);
+        }
         frame = new JFrame("Spawn Editor by Xeon");
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         frame.addWindowFocusListener(new java.awt.event.WindowFocusListener() {
@@ -65,7 +123,32 @@ public class EditorController {
                 if (presence != null) presence.setActive(false);
             }
         });
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                if (watcher != null) watcher.close();
+                if (jsonStore != null) jsonStore.close();
+                PersistenceExecutor.shared().flush();
+            }
+        });
         frame.setLayout(new BorderLayout());
+        JRootPane root = frame.getRootPane();
+        int menu = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menu), "undo");
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, menu), "redo");
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menu | InputEvent.SHIFT_DOWN_MASK), "redo");
+        root.getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!typing()) undo();
+            }
+        });
+        root.getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!typing()) redo();
+            }
+        });
         try (InputStream in = App.class.getResourceAsStream("icon.png")) {
             if (in == null) {
                 System.err.println("Icon resource not found next to App class: /com/spawneditor/icon.png");
@@ -90,6 +173,7 @@ public class EditorController {
             }
         }
         buildUi();
+        watchFiles();
         frame.setSize(1600, 900);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
@@ -99,14 +183,21 @@ public class EditorController {
         if (frame.getContentPane().getComponentCount() > 0) {
             frame.getContentPane().removeAll();
         }
+        unsubscribe.forEach(Runnable::run);
+        unsubscribe.clear();
+        if (validator != null) validator.close();
+        validator = new Validator(project, dynStore, npcIndex, objectIndex);
+        listen(project.changes(), validator::spawnsChanged);
+        listen(dynStore.changes(), validator::dynamicsChanged);
+        validator.revalidateAll();
         try {
-            mapPanel = new MapPanel(ImageIO.read(new File(Paths.MAP_IMAGE)), project);
+            BufferedImage map = preloadedMap != null ? preloadedMap : ImageIO.read(new File(Paths.MAP_IMAGE));
+            preloadedMap = null;
+            mapPanel = new MapPanel(map, project);
         } catch (Exception e) {
             Ui.error("Could not load map image: " + Paths.MAP_IMAGE + "\n" + e.getMessage());
             mapPanel = new MapPanel(null, project);
         }
-        jsonStore = new JsonStore(Paths.SPAWNS_JSON);
-        refreshAll(null);
         sidebar = new SidebarPanel(objectIndex, npcIndex);
         toolbar = new ToolbarPanel();
         spawnList = new SpawnListPanel(project, objectIndex, npcIndex, dynStore);
@@ -114,7 +205,15 @@ public class EditorController {
         spawnList.setMinimumSize(new Dimension(leftWidth, 0));
         spawnList.setPreferredSize(new Dimension(leftWidth, 0));
         spawnList.setMaximumSize(new Dimension(leftWidth, Integer.MAX_VALUE));
-        mapPanel.setDynamicSupplier(() -> dynStore.getEntries());
+        mapPanel.setDynamicStore(dynStore);
+        listen(project.changes(), spawnList::spawnsChanged);
+        listen(project.changes(), mapPanel::spawnsChanged);
+        listen(project.changes(), sidebar::spawnsChanged);
+        listen(dynStore.changes(), spawnList::dynamicsChanged);
+        listen(dynStore.changes(), mapPanel::dynamicsChanged);
+        listen(dynStore.changes(), sidebar::dynamicsChanged);
+        listen(validator.changes(), spawnList::problemsChanged);
+        spawnList.setProblemSource(validator::problems);
         mapPanel.setOnTileClicked(tile -> handleTileSelection(tile, true));
         spawnList.setOnSelect(entry -> {
             if (entry != null) handleTileSelection(entry.tile, false);
@@ -122,24 +221,40 @@ public class EditorController {
         spawnList.setOnSelectDynamic(dyn -> {
             if (dyn != null) handleTileSelection(dyn.toTile(), false);
         });
+        spawnList.setOnSelectProblem(problem -> {
+            if (problem != null) handleTileSelection(problem.tile, false);
+        });
         sidebar.setOnSaveJson(entry -> {
             if (entry != null) {
+                if (spawnsReadOnly()) {
+                    sidebar.markClean();
+                    return;
+                }
+                SpawnEntry before = project.findLast(entry.action, entry.tile).map(SpawnEntry::copy).orElse(null);
                 jsonStore.upsertOne(entry);
-                refreshAll(entry.tile);
+                project.upsertLast(entry);
+                history.spawnPut(before, entry.copy());
+                historyChanged();
+                selectContextAt(entry.tile, true);
                 sidebar.markClean();
             }
         });
         sidebar.setOnEditDynamic((dyn, newId, newTile) -> {
             if (dyn != null && newTile != null) {
+                int oldId = dyn.id;
+                Tile oldTile = dyn.toTile();
                 dynStore.updateEntry(dyn, newId, newTile);
-                refreshAll(newTile);
+                history.dynamicUpdated(dyn, oldId, oldTile);
+                historyChanged();
+                selectContextAt(newTile, true);
                 sidebar.markClean();
             }
         });
         sidebar.setOnCreateDynamic((id, tile) -> {
             if (tile != null) {
-                DynamicNpcEntry created = dynStore.appendEntry(id, tile); //Do not remove
-                refreshAll(tile);
+                history.dynamicAdded(dynStore.appendEntry(id, tile)); //Do not remove
+                historyChanged();
+                selectContextAt(tile, true);
                 sidebar.markClean();
                 DynamicNpcEntry match = dynStore.findBestForClick(tile);
                 if (match != null) {
@@ -150,10 +265,9 @@ public class EditorController {
             }
         });
         sidebar.setOnDeleteJson(entry -> {
-            if (entry != null) {
+            if (entry != null && !spawnsReadOnly()) {
                 Tile t = entry.tile;
-                jsonStore.deleteOne(entry);
-                refreshAll(t);
+                deleteSpawn(entry);
                 sidebar.clearFields();
                 selectContextAt(t, true);
             }
@@ -161,8 +275,7 @@ public class EditorController {
         sidebar.setOnDeleteDynamic(dyn -> {
             if (dyn != null) {
                 Tile t = dyn.toTile();
-                dynStore.deleteEntry(dyn);
-                refreshAll(t);
+                deleteDynamic(dyn);
                 sidebar.clearFields();
                 selectContextAt(t, true);
             }
@@ -171,16 +284,15 @@ public class EditorController {
             if (tile != null) {
                 Optional<SpawnEntry> json = project.findBestForClick(tile);
                 if (json.isPresent()) {
-                    jsonStore.deleteOne(json.get());
-                    refreshAll(tile);
+                    if (spawnsReadOnly()) return;
+                    deleteSpawn(json.get());
                     sidebar.clearFields();
                     selectContextAt(tile, true);
                     return;
                 }
                 DynamicNpcEntry dyn = dynStore.findBestForClick(tile);
                 if (dyn != null) {
-                    dynStore.deleteEntry(dyn);
-                    refreshAll(tile);
+                    deleteDynamic(dyn);
                     sidebar.clearFields();
                     selectContextAt(tile, true);
                 }
@@ -191,12 +303,19 @@ public class EditorController {
         toolbar.onToggleTypes.addListener(mapPanel::setTypeVisibility);
         toolbar.onJumpToTile.addListener(tile -> { if (tile != null) handleTileSelection(tile, false); });
         toolbar.setOnRefresh(e -> refreshAll(sidebar != null ? sidebar.getCurrentTile() : null));
+        toolbar.setOnUndo(e -> undo());
+        toolbar.setOnRedo(e -> redo());
+        historyChanged();
         toolbar.setOnSaveAs(e -> {
             File f = com.spawneditor.util.Ui.saveJson(frame, "Save spawns.json as");
             if (f != null) {
                 Paths.SPAWNS_JSON = f.getAbsolutePath();
+                openJsonStore();
+                history.clear();
+                historyChanged();
                 jsonStore.save(project);
-                refreshAll(null);
+                jsonStore.loadInto(new SpawnProject());
+                watchFiles();
             }
         });
         toolbar.setOnPaths(e -> {
@@ -206,9 +325,10 @@ public class EditorController {
                 objectIndex = new ObjectIndex(Paths.OBJECTS_JSON);
                 npcIndex = new NpcIndex(Paths.NPCS_JSON);
                 dynStore = new DynamicNpcStore(Paths.DYNAMIC_NPCS_TXT, npcIndex::nameFor);
-                jsonStore = new JsonStore(Paths.SPAWNS_JSON);
+                openJsonStore();
                 refreshAll(null);
                 buildUi();
+                watchFiles();
                 frame.revalidate();
                 frame.repaint();
             }
@@ -219,28 +339,168 @@ public class EditorController {
         frame.add(spawnList, BorderLayout.WEST);
     }
 
+    private void openJsonStore() {
+        if (jsonStore != null) jsonStore.close();
+        jsonStore = new JsonStore(Paths.SPAWNS_JSON);
+        jsonStore.setJournaled(Paths.JOURNAL_SPAWNS);
+    }
+
+    // a dump opened read-only, see JsonStore.loadInto; dynamic NPCs can still be edited
+    private boolean spawnsReadOnly() {
+        if (!project.isReadOnly()) return false;
+        Ui.warn("spawns.json is over " + Paths.READ_ONLY_ABOVE_MB + " MB and was opened read-only; spawn edits are disabled.");
+        return true;
+    }
+
+    // what deleteOne removes is the last entry with the key, which is what gets recorded
+    private void deleteSpawn(SpawnEntry entry) {
+        SpawnEntry removed = project.findLast(entry.action, entry.tile).map(SpawnEntry::copy).orElse(entry.copy());
+        if (!jsonStore.deleteOne(entry)) return;
+        project.removeLast(entry);
+        history.spawnDeleted(removed);
+        historyChanged();
+    }
+
+    private void deleteDynamic(DynamicNpcEntry dyn) {
+        if (!dynStore.deleteEntry(dyn)) return;
+        history.dynamicDeleted(dyn);
+        historyChanged();
+    }
+
+    // the shortcuts are window-wide; a text field keeps its own keys
+    private static boolean typing() {
+        return KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner() instanceof JTextComponent;
+    }
+
+    // pending sidebar edits are saved first, so undo takes them back instead of losing them
+    private void undo() {
+        commitPendingIfAny();
+        if (!history.canUndo()) return;
+        selectContextAt(history.undo(historyTarget), true);
+        historyChanged();
+    }
+
+    private void redo() {
+        commitPendingIfAny();
+        if (!history.canRedo()) return;
+        selectContextAt(history.redo(historyTarget), true);
+        historyChanged();
+    }
+
+    private void historyChanged() {
+        if (toolbar != null) toolbar.setUndoEnabled(history.canUndo(), history.canRedo());
+    }
+
+    private <T> void listen(ChangeBus<T> bus, Consumer<ChangeBus.Changes<T>> listener) {
+        bus.addListener(listener);
+        unsubscribe.add(() -> bus.removeListener(listener));
+    }
+
+    private void watchFiles() {
+        if (watcher != null) watcher.close();
+        watcher = null;
+        try {
+            watcher = new FileWatcher(List.of(Paths.SPAWNS_JSON, Paths.DYNAMIC_NPCS_TXT, Paths.NPCS_JSON, Paths.OBJECTS_JSON),
+                    this::filesChanged);
+        } catch (Exception e) {
+            System.err.println("File watching unavailable: " + e.getMessage());
+        }
+    }
+
+    // events for our own writes arrive here too; the stores' stamps filter those out
+    private void filesChanged(Set<String> changed) {
+        if (changed.contains(Paths.SPAWNS_JSON) && jsonStore.changedOnDisk()) mergeSpawns();
+        if (changed.contains(Paths.DYNAMIC_NPCS_TXT) && dynStore.changedOnDisk()) {
+            history.forget(dynStore.merge());
+            historyChanged();
+        }
+        if (changed.contains(Paths.NPCS_JSON)) npcIndex.reloadInBackground(this::namesChanged);
+        if (changed.contains(Paths.OBJECTS_JSON)) objectIndex.reloadInBackground(this::namesChanged);
+    }
+
+    // only what differs is applied, as one undo step. A dump has nothing to merge: it is read again
+    private void mergeSpawns() {
+        if (project.isReadOnly()) {
+            jsonStore.loadInto(project);
+            return;
+        }
+        SpawnProject fresh = new SpawnProject();
+        jsonStore.loadInto(fresh);
+        if (fresh.isReadOnly()) {
+            history.forgetSpawns();
+            historyChanged();
+            project.setDump(fresh.dump());
+            return;
+        }
+        SpawnDiff diff = SpawnDiff.between(project.getEntries(), fresh.getEntries());
+        if (diff.isEmpty()) return;
+        history.begin();
+        try {
+            for (SpawnEntry e : diff.removed) {
+                // every duplicate of the key goes
+                Optional<SpawnEntry> cur;
+                while ((cur = project.findLast(e.action, e.tile)).isPresent()) {
+                    SpawnEntry removed = cur.get().copy();
+                    project.removeLast(e);
+                    history.spawnDeleted(removed);
+                }
+            }
+            for (SpawnEntry e : diff.changed) mergeUpsert(e);
+            for (SpawnEntry e : diff.added) mergeUpsert(e);
+        } finally {
+            history.end();
+        }
+        historyChanged();
+    }
+
+    private void mergeUpsert(SpawnEntry e) {
+        SpawnEntry before = project.findLast(e.action, e.tile).map(SpawnEntry::copy).orElse(null);
+        project.upsertLast(e);
+        history.spawnPut(before, e.copy());
+    }
+
+    // full reload from disk, for Refresh and path changes
     private void refreshAll(Tile focusTile) {
-        objectIndex.load();
-        npcIndex.load();
+        history.clear();
+        historyChanged();
+        SnapshotCache cache = SnapshotCache.open();
+        CompletableFuture<Void> names = CompletableFuture.allOf(
+                objectIndex.reloadInBackground(this::namesChanged),
+                npcIndex.reloadInBackground(this::namesChanged));
         dynStore.setNameLookup(npcIndex::nameFor);
-        dynStore.load();
+        dynStore.load(cache);
         project.clear();
-        jsonStore.loadInto(project);
-        if (spawnList != null) spawnList.refresh();
-        if (mapPanel != null) mapPanel.repaint();
+        jsonStore.loadInto(project, cache);
+        // the names go in once both reloads are done, so they are stored under their own fingerprints
+        SnapshotCache.PendingSave save = cache.capture(jsonStore, project, dynStore);
+        names.whenComplete((ok, ex) -> save.finish(objectIndex, npcIndex));
         if (focusTile != null) selectContextAt(focusTile, true);
     }
 
+    // for the startup loader, as each name list arrives after the editor has opened
+    public void namesLoaded() {
+        namesChanged();
+    }
+
+    // rows and the sidebar are relabelled where they stand, keeping selection and scroll
+    private void namesChanged() {
+        if (spawnList != null) spawnList.namesChanged();
+        if (sidebar != null) sidebar.namesChanged();
+        if (validator != null) validator.revalidateAll();
+    }
+
     private void selectContextAt(Tile tile, boolean prepareNewIfNone) {
         if (tile == null) return;
+        project.changes().flush();
+        dynStore.changes().flush();
         sidebar.setTile(tile);
         Optional<SpawnEntry> match = project.findBestForClick(tile);
         if (match.isPresent()) {
             SpawnEntry entry = match.get();
             sidebar.setEntry(entry);
             spawnList.selectEntry(entry);
-            sidebar.setDeleteEnabled(true);
-            sidebar.setSaveEnabled(true);
+            sidebar.setDeleteEnabled(!project.isReadOnly());
+            sidebar.setSaveEnabled(!project.isReadOnly());
             mapPanel.focusTile(entry.tile, null);
             return;
         }
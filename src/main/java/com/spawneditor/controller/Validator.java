@@ -0,0 +1,273 @@
+package com.spawneditor.controller;
+
+import com.spawneditor.io.DynamicNpcStore;
+import com.spawneditor.io.NameTable;
+import com.spawneditor.io.NpcIndex;
+import com.spawneditor.io.ObjectIndex;
+import com.spawneditor.model.ActionType;
+import com.spawneditor.model.ChangeBus;
+import com.spawneditor.model.DynamicNpcEntry;
+import com.spawneditor.model.Problem;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.SpawnProject;
+import com.spawneditor.model.Tile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// per-tile checks on a worker thread, fed copies taken on the EDT
+final class Validator {
+    private static final ActionType[] ACTIONS = ActionType.values();
+    private static final Comparator<Rec> BY_TILE = Comparator.<Rec>comparingInt(r -> r.z).thenComparingInt(r -> r.x).thenComparingInt(r -> r.y);
+
+    private final SpawnProject project;
+    private final DynamicNpcStore dynStore;
+    private final NpcIndex npcIndex;
+    private final ObjectIndex objectIndex;
+    private final ChangeBus<Problem> changes = new ChangeBus<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "spawn-editor-validator");
+        t.setDaemon(true);
+        return t;
+    });
+    // bumped by every full pass; work queued before it is superseded and dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    // written by the worker, read by problems()
+    private final Map<Tile, List<Problem>> byTile = new LinkedHashMap<>();
+    // where each dynamic NPC was last seen, since an update moves it in place (EDT only)
+    private final Map<DynamicNpcEntry, Tile> dynamicAt = new IdentityHashMap<>();
+
+    // what the checks need from one entry, copied on the EDT
+    private static final class Rec {
+        final ActionType action;
+        final int x, y, z;
+        final Integer id;
+
+        Rec(ActionType action, int x, int y, int z, Integer id) {
+            this.action = action;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.id = id;
+        }
+    }
+
+    // Rec fields as flat arrays, so the EDT copy allocates nothing per entry
+    private static final class Snapshot {
+        final ActionType[] action;
+        final int[] x, y, z;
+        final Integer[] id;
+        int size;
+
+        Snapshot(int capacity) {
+            action = new ActionType[capacity];
+            x = new int[capacity];
+            y = new int[capacity];
+            z = new int[capacity];
+            id = new Integer[capacity];
+        }
+
+        void add(ActionType a, int x, int y, int z, Integer id) {
+            action[size] = a;
+            this.x[size] = x;
+            this.y[size] = y;
+            this.z[size] = z;
+            this.id[size] = id;
+            size++;
+        }
+
+        List<Rec> toRecs() {
+            List<Rec> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) out.add(new Rec(action[i], x[i], y[i], z[i], id[i]));
+            return out;
+        }
+    }
+
+    Validator(SpawnProject project, DynamicNpcStore dynStore, NpcIndex npcIndex, ObjectIndex objectIndex) {
+        this.project = project;
+        this.dynStore = dynStore;
+        this.npcIndex = npcIndex;
+        this.objectIndex = objectIndex;
+    }
+
+    ChangeBus<Problem> changes() {
+        return changes;
+    }
+
+    // sorted as of the last full pass, then newer problems in the order they appeared
+    synchronized List<Problem> problems() {
+        List<Problem> out = new ArrayList<>();
+        for (List<Problem> ps : byTile.values()) out.addAll(ps);
+        return out;
+    }
+
+    void close() {
+        generation.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    void spawnsChanged(ChangeBus.Changes<SpawnEntry> c) {
+        if (c.reset) {
+            revalidateAll();
+            return;
+        }
+        Set<Tile> dirty = new LinkedHashSet<>();
+        for (Set<SpawnEntry> set : List.of(c.removed, c.updated, c.added)) {
+            for (SpawnEntry e : set) {
+                if (e.tile != null) dirty.add(new Tile(e.tile.x, e.tile.y, e.tile.z));
+            }
+        }
+        revalidate(dirty);
+    }
+
+    void dynamicsChanged(ChangeBus.Changes<DynamicNpcEntry> c) {
+        if (c.reset) {
+            revalidateAll();
+            return;
+        }
+        Set<Tile> dirty = new LinkedHashSet<>();
+        for (DynamicNpcEntry d : c.removed) {
+            Tile was = dynamicAt.remove(d);
+            dirty.add(was != null ? was : d.toTile());
+        }
+        for (DynamicNpcEntry d : c.updated) {
+            Tile was = dynamicAt.put(d, d.toTile());
+            if (was != null) dirty.add(was);
+            dirty.add(d.toTile());
+        }
+        for (DynamicNpcEntry d : c.added) {
+            dynamicAt.put(d, d.toTile());
+            dirty.add(d.toTile());
+        }
+        revalidate(dirty);
+    }
+
+    // EDT: copies every entry and hands the whole world to the worker
+    void revalidateAll() {
+        List<SpawnEntry> spawns = project.getEntries();
+        List<DynamicNpcEntry> dynamics = dynStore.getEntries();
+        Snapshot all = new Snapshot(spawns.size() + dynamics.size());
+        for (SpawnEntry e : spawns) {
+            if (e.tile != null && e.action != null) all.add(e.action, e.tile.x, e.tile.y, e.tile.z, e.id);
+        }
+        dynamicAt.clear();
+        for (DynamicNpcEntry d : dynamics) {
+            all.add(ActionType.DYNAMIC_NPC, d.x, d.y, d.z, d.id);
+            dynamicAt.put(d, d.toTile());
+        }
+        int gen = generation.incrementAndGet();
+        worker.execute(() -> fullPass(all.toRecs(), gen));
+    }
+
+    // EDT: copies what is on each tile now, including tiles that are now empty
+    private void revalidate(Set<Tile> dirty) {
+        if (dirty.isEmpty()) return;
+        Map<Tile, List<Rec>> contents = new LinkedHashMap<>();
+        for (Tile t : dirty) {
+            List<Rec> recs = new ArrayList<>();
+            for (SpawnEntry e : project.entriesInRect(t.x, t.y, t.x, t.y, t.z)) {
+                if (e.tile.z == t.z && e.action != null) recs.add(new Rec(e.action, t.x, t.y, t.z, e.id));
+            }
+            for (DynamicNpcEntry d : dynStore.entriesInRect(t.x, t.y, t.x, t.y, t.z)) {
+                if (d.z == t.z) recs.add(new Rec(ActionType.DYNAMIC_NPC, t.x, t.y, t.z, d.id));
+            }
+            contents.put(t, recs);
+        }
+        int gen = generation.get();
+        worker.execute(() -> {
+            if (gen == generation.get()) incrementalPass(contents);
+        });
+    }
+
+    private void fullPass(List<Rec> all, int gen) {
+        NameTable npcs = npcIndex.names();
+        NameTable objects = objectIndex.names();
+        all.sort(BY_TILE);
+        Map<Tile, List<Problem>> found = new LinkedHashMap<>();
+        int from = 0, tiles = 0;
+        for (int i = 1; i <= all.size(); i++) {
+            if (i < all.size() && BY_TILE.compare(all.get(from), all.get(i)) == 0) continue;
+            if (++tiles % 4096 == 0 && gen != generation.get()) return;
+            Rec r = all.get(from);
+            Tile t = new Tile(r.x, r.y, r.z);
+            List<Problem> ps = check(t, all.subList(from, i), npcs, objects);
+            if (!ps.isEmpty()) found.put(t, ps);
+            from = i;
+        }
+        synchronized (this) {
+            if (gen != generation.get()) return;
+            byTile.clear();
+            byTile.putAll(found);
+            changes.reset();
+        }
+    }
+
+    private void incrementalPass(Map<Tile, List<Rec>> contents) {
+        NameTable npcs = npcIndex.names();
+        NameTable objects = objectIndex.names();
+        for (Map.Entry<Tile, List<Rec>> tile : contents.entrySet()) {
+            List<Problem> now = check(tile.getKey(), tile.getValue(), npcs, objects);
+            synchronized (this) {
+                List<Problem> was = byTile.getOrDefault(tile.getKey(), List.of());
+                if (sameMessages(was, now)) continue;
+                if (now.isEmpty()) byTile.remove(tile.getKey());
+                else byTile.put(tile.getKey(), now);
+                for (Problem p : was) changes.removed(p);
+                for (Problem p : now) changes.added(p);
+            }
+        }
+    }
+
+    // recs all sit on t; an empty name list (not loaded, or missing) skips the id checks
+    private static List<Problem> check(Tile t, List<Rec> recs, NameTable npcs, NameTable objects) {
+        if (recs.isEmpty()) return List.of();
+        Map<String, Problem> out = new LinkedHashMap<>();
+        int[] perAction = new int[ACTIONS.length];
+        for (Rec r : recs) perAction[r.action.ordinal()]++;
+        if (t.z < 0 || t.z > 3) add(out, Problem.Kind.BAD_PLANE, t, "plane " + t.z + " is outside 0-3");
+        for (ActionType a : ACTIONS) {
+            if (a != ActionType.DYNAMIC_NPC && perAction[a.ordinal()] > 1) {
+                add(out, Problem.Kind.DUPLICATE_KEY, t, perAction[a.ordinal()] + " " + a.wire + " entries share this tile");
+            }
+        }
+        if (perAction[ActionType.DELETE_OBJECT.ordinal()] > 0) {
+            for (ActionType a : ACTIONS) {
+                if (a != ActionType.DELETE_OBJECT && perAction[a.ordinal()] > 0) {
+                    add(out, Problem.Kind.SPAWN_ON_DELETE, t, a.wire + " on a tile with delete_object");
+                }
+            }
+        }
+        for (Rec r : recs) {
+            if (r.id == null) continue;
+            if (r.action == ActionType.SPAWN_NPC || r.action == ActionType.DYNAMIC_NPC) {
+                if (!npcs.isEmpty() && !npcs.contains(r.id)) {
+                    add(out, Problem.Kind.UNKNOWN_NPC, t, r.action.wire + " id " + r.id + " is not in the NPC list");
+                }
+            } else if (!objects.isEmpty() && !objects.contains(r.id)) {
+                add(out, Problem.Kind.UNKNOWN_OBJECT, t, r.action.wire + " id " + r.id + " is not in the object list");
+            }
+        }
+        return new ArrayList<>(out.values());
+    }
+
+    private static void add(Map<String, Problem> out, Problem.Kind kind, Tile t, String message) {
+        out.putIfAbsent(message, new Problem(kind, t, message));
+    }
+
+    private static boolean sameMessages(List<Problem> a, List<Problem> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).message.equals(b.get(i).message)) return false;
+        }
+        return true;
+    }
+}
@@ -1,21 +1,74 @@
 package com.spawneditor.io;
 
+import com.spawneditor.model.ChangeBus;
 import com.spawneditor.model.DynamicNpcEntry;
+import com.spawneditor.model.RegionIndex;
 import com.spawneditor.model.Tile;
+import com.spawneditor.model.TileKey;
 import com.spawneditor.util.Ui;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.IntFunction;
 
 public class DynamicNpcStore {
     public interface NameLookup extends IntFunction<String> {}
     private final String path;
+    private final PersistenceExecutor persistence = PersistenceExecutor.shared();
+    private final FileStamps stamps = new FileStamps();
     private final List<String> allLines = new ArrayList<>();
     private final List<DynamicNpcEntry> entries = new ArrayList<>();
+    // rebuilt on the next query after a load or rollback, kept up to date by edits otherwise
+    private final RegionIndex<DynamicNpcEntry> byRegion = new RegionIndex<>(e -> TileKey.of(e.x, e.y, e.z));
+    private boolean regionsStale = true;
+    private final ChangeBus<DynamicNpcEntry> changes = new ChangeBus<>();
     private NameLookup nameLookup;
+    private String lineSeparator = System.lineSeparator();
+    private boolean synced;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = -1;
+    private boolean lengthChanged;
+    private long lastWriteBytes;
+    private long totalBytesWritten;
+    private FileFingerprint fingerprint;
+    private Checkpoint batch;
+
+    // lines and entry fields as they were when the batch opened
+    private static final class Checkpoint {
+        final List<String> lines;
+        final List<DynamicNpcEntry> entries;
+        final int[] fields;
+        final String[] rawLines;
+        final boolean synced;
+        final int dirtyFrom, dirtyTo;
+        final boolean lengthChanged;
+
+        Checkpoint(DynamicNpcStore s) {
+            lines = new ArrayList<>(s.allLines);
+            entries = new ArrayList<>(s.entries);
+            fields = new int[entries.size() * 5];
+            rawLines = new String[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                DynamicNpcEntry e = entries.get(i);
+                fields[i * 5] = e.id;
+                fields[i * 5 + 1] = e.x;
+                fields[i * 5 + 2] = e.y;
+                fields[i * 5 + 3] = e.z;
+                fields[i * 5 + 4] = e.lineIndex;
+                rawLines[i] = e.rawLine;
+            }
+            synced = s.synced;
+            dirtyFrom = s.dirtyFrom;
+            dirtyTo = s.dirtyTo;
+            lengthChanged = s.lengthChanged;
+        }
+    }
     public DynamicNpcStore(String path) {
         this(path, null);
     }
@@ -33,16 +86,123 @@ public class DynamicNpcStore {
         return entries;
     }
 
+    public ChangeBus<DynamicNpcEntry> changes() {
+        return changes;
+    }
+
     public void load() {
-        entries.clear();
-        allLines.clear();
+        load(null);
+    }
+
+    public void load(SnapshotCache cache) {
+        load(cache, null);
+    }
+
+    public void load(SnapshotCache cache, LoadProgress progress) {
+        persistence.flush();
+        synchronized (this) {
+            if (batch != null) changes.release();
+            batch = null;
+            entries.clear();
+            regionsStale = true;
+            changes.reset();
+            allLines.clear();
+            synced = false;
+            clearDirty();
+            fingerprint = null;
+            SnapshotCache.DynamicLines cached = cache != null ? cache.restoreDynamic(path) : null;
+            if (cached != null) {
+                allLines.addAll(cached.lines);
+                entries.addAll(cached.entries);
+                lineSeparator = cached.lineSeparator;
+                synced = cached.synced;
+                fingerprint = cached.fingerprint;
+            } else {
+                loadLines(progress);
+            }
+            stamps.clear();
+            stamps.note(new File(path));
+        }
+    }
+
+    // see JsonStore.changedOnDisk
+    public boolean changedOnDisk() {
+        File f = new File(path);
+        boolean[] changed = {false};
+        persistence.run(() -> changed[0] = stamps.differ(f.isFile() ? List.of(f) : List.of()));
+        return changed[0];
+    }
+
+    // an edit made outside the editor: entries still in the file keep their objects, the rest are
+    // replaced; returns the entries that went. Nothing is written back
+    public List<DynamicNpcEntry> merge() {
+        persistence.flush();
+        synchronized (this) {
+            File f = new File(path);
+            FileFingerprint read = f.exists() ? FileFingerprint.of(f) : null;
+            List<String> lines = new ArrayList<>();
+            List<DynamicNpcEntry> fresh = new ArrayList<>();
+            if (read != null && !readLines(f, null, lines, fresh)) return List.of();
+            Map<Long, List<DynamicNpcEntry>> old = new HashMap<>();
+            for (DynamicNpcEntry e : entries) old.computeIfAbsent(TileKey.of(e.x, e.y, e.z), k -> new ArrayList<>(1)).add(e);
+            List<DynamicNpcEntry> added = new ArrayList<>();
+            for (int i = 0; i < fresh.size(); i++) {
+                DynamicNpcEntry n = fresh.get(i);
+                DynamicNpcEntry kept = take(old.get(TileKey.of(n.x, n.y, n.z)), n.id);
+                if (kept == null) {
+                    added.add(n);
+                    continue;
+                }
+                kept.lineIndex = n.lineIndex;
+                kept.rawLine = n.rawLine;
+                fresh.set(i, kept);
+            }
+            List<DynamicNpcEntry> removed = new ArrayList<>();
+            for (List<DynamicNpcEntry> gone : old.values()) removed.addAll(gone);
+            allLines.clear();
+            allLines.addAll(lines);
+            entries.clear();
+            entries.addAll(fresh);
+            for (DynamicNpcEntry e : removed) {
+                if (!regionsStale) byRegion.remove(e);
+                changes.removed(e);
+            }
+            for (DynamicNpcEntry e : added) {
+                if (!regionsStale) byRegion.add(e);
+                changes.added(e);
+            }
+            clearDirty();
+            if (read != null) noteSeparator(f);
+            fingerprint = read;
+            stamps.clear();
+            stamps.note(f);
+            return removed;
+        }
+    }
+
+    private static DynamicNpcEntry take(List<DynamicNpcEntry> candidates, int id) {
+        if (candidates == null) return null;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i).id == id) return candidates.remove(i);
+        }
+        return null;
+    }
+
+    private void loadLines(LoadProgress progress) {
         File f = new File(path);
         if (!f.exists()) {
             Ui.warn("Dynamic NPC list not found: " + path);
             return;
         }
+        FileFingerprint read = FileFingerprint.of(f);
+        if (!readLines(f, progress, allLines, entries)) return;
+        noteSeparator(f);
+        fingerprint = read;
+    }
+
+    private static boolean readLines(File f, LoadProgress progress, List<String> allLines, List<DynamicNpcEntry> entries) {
         try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+                new InputStreamReader(LoadProgress.open(f, progress), StandardCharsets.UTF_8))) {
             String line;
             int idx = 0;
             while ((line = br.readLine()) != null) {
@@ -71,36 +231,69 @@ public class DynamicNpcStore {
             }
         } catch (Exception e) {
             Ui.error("Failed to load dynamic NPC list: " + e.getMessage());
+            return false;
         }
+        return true;
     }
 
-    public void updateEntry(DynamicNpcEntry entry, int newId, Tile newTile) {
+    private void noteSeparator(File f) {
+        long text = 0;
+        for (String ln : allLines) text += LineFiles.utf8Length(ln);
+        String sep = LineFiles.separatorMatching(text, allLines.size(), f.length());
+        synced = sep != null;
+        lineSeparator = sep != null ? sep : System.lineSeparator();
+    }
+
+    String path() {
+        return path;
+    }
+
+    synchronized FileFingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    List<String> lines() {
+        return allLines;
+    }
+
+    String lineSeparator() {
+        return lineSeparator;
+    }
+
+    boolean isSynced() {
+        return synced;
+    }
+
+    public synchronized void updateEntry(DynamicNpcEntry entry, int newId, Tile newTile) {
         if (entry == null) return;
         int dataIdx = entry.lineIndex;
         if (dataIdx < 0 || dataIdx >= allLines.size()) return;
         String newData = buildSpawnLine(newId, newTile.x, newTile.y, newTile.z);
         String comment = editorCommentFor(newId);
         if (dataIdx > 0 && allLines.get(dataIdx - 1).trim().startsWith("//")) {
-            allLines.set(dataIdx - 1, comment);
+            setLine(dataIdx - 1, comment);
         } else {
-            allLines.add(dataIdx, comment);
+            insertLine(dataIdx, comment);
             dataIdx++;
             shiftEntryLineIndexesFrom(dataIdx, +1);
         }
-        allLines.set(dataIdx, newData);
+        setLine(dataIdx, newData);
+        boolean indexed = !regionsStale && byRegion.remove(entry);
         entry.id = newId;
         entry.x = newTile.x; entry.y = newTile.y; entry.z = newTile.z;
+        if (indexed) byRegion.add(entry);
+        changes.updated(entry);
         entry.lineIndex = dataIdx;
         entry.rawLine = newData;
-        writeAll();
+        scheduleWrite();
     }
 
-    public DynamicNpcEntry appendEntry(int id, Tile tile) {
+    public synchronized DynamicNpcEntry appendEntry(int id, Tile tile) {
         String comment = editorCommentFor(id);
         String data = buildSpawnLine(id, tile.x, tile.y, tile.z);
         int insertAt = allLines.size();
-        allLines.add(comment);
-        allLines.add(data);
+        insertLine(insertAt, comment);
+        insertLine(insertAt + 1, data);
         DynamicNpcEntry e = new DynamicNpcEntry();
         e.id = id;
         e.x = tile.x; e.y = tile.y; e.z = tile.z;
@@ -109,20 +302,22 @@ public class DynamicNpcStore {
         e.lineIndex = insertAt + 1;
         e.rawLine = data;
         entries.add(e);
-        writeAll();
+        if (!regionsStale) byRegion.add(e);
+        changes.added(e);
+        scheduleWrite();
         return e;
     }
 
-    public void deleteEntry(DynamicNpcEntry entry) {
-        if (entry == null) return;
+    public synchronized boolean deleteEntry(DynamicNpcEntry entry) {
+        if (entry == null) return false;
         int dataIdx = entry.lineIndex;
-        if (dataIdx < 0 || dataIdx >= allLines.size()) return;
-        allLines.remove(dataIdx);
+        if (dataIdx < 0 || dataIdx >= allLines.size()) return false;
+        removeLine(dataIdx);
         int removed = 1;
         while (dataIdx - 1 >= 0) {
             String prev = allLines.get(dataIdx - 1).trim();
             if (prev.startsWith("//")) {
-                allLines.remove(dataIdx - 1);
+                removeLine(dataIdx - 1);
                 removed++;
                 dataIdx--;
             } else {
@@ -131,12 +326,62 @@ public class DynamicNpcStore {
         }
         int oldDataLine = entry.lineIndex;
         entries.remove(entry);
+        if (!regionsStale) byRegion.remove(entry);
+        changes.removed(entry);
         for (DynamicNpcEntry e : entries) {
             if (e.lineIndex > oldDataLine) {
                 e.lineIndex -= removed;
             }
         }
-        writeAll();
+        scheduleWrite();
+        return true;
+    }
+
+    private void scheduleWrite() {
+        if (batch == null) persistence.schedule(this, this::writeFile);
+    }
+
+    // edits made until commit() are written as one save; rollback() puts lines and entries back
+    public void beginBatch() {
+        persistence.flush();
+        synchronized (this) {
+            if (batch != null) throw new IllegalStateException("A batch is already open");
+            batch = new Checkpoint(this);
+            changes.hold();
+        }
+    }
+
+    public synchronized void commit() {
+        if (batch == null) throw new IllegalStateException("No batch is open");
+        batch = null;
+        changes.release();
+        if (dirtyTo >= 0 || !synced) persistence.schedule(this, this::writeFile);
+    }
+
+    public synchronized void rollback() {
+        if (batch == null) throw new IllegalStateException("No batch is open");
+        Checkpoint c = batch;
+        batch = null;
+        allLines.clear();
+        allLines.addAll(c.lines);
+        entries.clear();
+        entries.addAll(c.entries);
+        regionsStale = true;
+        changes.reset();
+        changes.release();
+        for (int i = 0; i < c.entries.size(); i++) {
+            DynamicNpcEntry e = c.entries.get(i);
+            e.id = c.fields[i * 5];
+            e.x = c.fields[i * 5 + 1];
+            e.y = c.fields[i * 5 + 2];
+            e.z = c.fields[i * 5 + 3];
+            e.lineIndex = c.fields[i * 5 + 4];
+            e.rawLine = c.rawLines[i];
+        }
+        synced = c.synced;
+        dirtyFrom = c.dirtyFrom;
+        dirtyTo = c.dirtyTo;
+        lengthChanged = c.lengthChanged;
     }
 
     private String editorCommentFor(int id) {
@@ -157,18 +402,114 @@ public class DynamicNpcStore {
         }
     }
 
-    private void writeAll() {
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-            for (String ln : allLines) {
-                bw.write(ln);
-                bw.newLine();
+    private void setLine(int i, String line) {
+        if (LineFiles.utf8Length(line) != LineFiles.utf8Length(allLines.get(i))) lengthChanged = true;
+        allLines.set(i, line);
+        dirtyFrom = Math.min(dirtyFrom, i);
+        dirtyTo = Math.max(dirtyTo, i + 1);
+    }
+
+    private void insertLine(int i, String line) {
+        allLines.add(i, line);
+        lengthChanged = true;
+        dirtyFrom = Math.min(dirtyFrom, i);
+        dirtyTo = Math.max(dirtyTo, i + 1);
+    }
+
+    private void removeLine(int i) {
+        allLines.remove(i);
+        lengthChanged = true;
+        dirtyFrom = Math.min(dirtyFrom, i);
+        dirtyTo = Math.max(dirtyTo, i);
+    }
+
+    private void clearDirty() {
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = -1;
+        lengthChanged = false;
+    }
+
+    // same-length edits are patched in place; anything else replaces the file atomically
+    private void writeFile() {
+        String[] snapshot;
+        String sep;
+        synchronized (this) {
+            if (batch != null || (synced && dirtyTo < 0)) return;
+            if (synced && !lengthChanged && stamps.matches(new File(path))) {
+                writeInPlace();
+                return;
             }
+            snapshot = allLines.toArray(new String[0]);
+            sep = lineSeparator;
+            synced = true;
+            clearDirty();
+        }
+        try {
+            recordWrite(LineFiles.replaceAtomically(new File(path), w -> {
+                for (String ln : snapshot) {
+                    w.write(ln);
+                    w.write(sep);
+                }
+            }));
+            stamps.note(new File(path));
         } catch (Exception e) {
+            synchronized (this) {
+                synced = false;
+            }
             Ui.error("Failed to save dynamic NPC list: " + e.getMessage());
         }
     }
 
+    private void writeInPlace() {
+        try (FileChannel ch = FileChannel.open(new File(path).toPath(), StandardOpenOption.WRITE)) {
+            long start = LineFiles.byteLength(allLines, 0, dirtyFrom, lineSeparator);
+            Writer w = LineFiles.writerAt(ch, start);
+            for (int i = dirtyFrom; i < dirtyTo; i++) {
+                w.write(allLines.get(i));
+                w.write(lineSeparator);
+            }
+            w.flush();
+            recordWrite(LineFiles.byteLength(allLines, dirtyFrom, dirtyTo, lineSeparator));
+            clearDirty();
+        } catch (Exception e) {
+            synced = false;
+            Ui.error("Failed to save dynamic NPC list: " + e.getMessage());
+        }
+        stamps.note(new File(path));
+    }
+
+    private synchronized void recordWrite(long bytes) {
+        lastWriteBytes = bytes;
+        totalBytesWritten += bytes;
+    }
+
+    public synchronized long getLastWriteBytes() {
+        return lastWriteBytes;
+    }
+
+    public synchronized long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+
+    public synchronized List<DynamicNpcEntry> entriesInRect(int x0, int y0, int x1, int y1, int plane) {
+        indexRegions();
+        return byRegion.query(x0, y0, x1, y1, plane);
+    }
+
+    // planes lo to hi inclusive, lowest first
+    public synchronized List<DynamicNpcEntry> entriesInRect(int x0, int y0, int x1, int y1, int lo, int hi) {
+        indexRegions();
+        return byRegion.query(x0, y0, x1, y1, lo, hi);
+    }
+
+    private void indexRegions() {
+        if (!regionsStale) return;
+        byRegion.clear();
+        byRegion.ensureCapacity(entries.size());
+        for (DynamicNpcEntry e : entries) byRegion.add(e);
+        regionsStale = false;
+    }
+
     public DynamicNpcEntry findFirstAt(Tile t) {
         if (t == null) return null;
         for (DynamicNpcEntry e : entries) {
@@ -0,0 +1,62 @@
+package com.spawneditor.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+
+final class FileFingerprint {
+    final long size;
+    final long modified;
+    final long hash;
+
+    FileFingerprint(long size, long modified, long hash) {
+        this.size = size;
+        this.modified = modified;
+        this.hash = hash;
+    }
+
+    static FileFingerprint of(File f) {
+        if (f == null || !f.isFile()) return null;
+        try {
+            long size = f.length();
+            long modified = f.lastModified();
+            return new FileFingerprint(size, modified, hash(f));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // size and mtime are checked first so a changed file is usually rejected without reading it
+    boolean matches(File f) {
+        if (f == null || !f.isFile() || f.length() != size || f.lastModified() != modified) return false;
+        try {
+            return hash(f) == hash;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long hash(File f) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(f)) {
+            int n;
+            while ((n = in.read(buf)) > 0) crc.update(buf, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FileFingerprint)) return false;
+        FileFingerprint p = (FileFingerprint) o;
+        return size == p.size && modified == p.modified && hash == p.hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size * 31 + hash);
+    }
+}
@@ -0,0 +1,34 @@
+package com.spawneditor.io;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// size and mtime of every file a store last read or wrote itself
+final class FileStamps {
+    private final Map<String, long[]> stamps = new HashMap<>();
+
+    synchronized void note(File f) {
+        if (f.isFile()) stamps.put(f.getAbsolutePath(), new long[] {f.length(), f.lastModified()});
+        else stamps.remove(f.getAbsolutePath());
+    }
+
+    synchronized void clear() {
+        stamps.clear();
+    }
+
+    synchronized boolean matches(File f) {
+        long[] s = stamps.get(f.getAbsolutePath());
+        return s != null && f.isFile() && f.length() == s[0] && f.lastModified() == s[1];
+    }
+
+    // files is everything that exists on disk now; a stamped file missing from it was deleted
+    synchronized boolean differ(Collection<File> files) {
+        if (files.size() != stamps.size()) return true;
+        for (File f : files) {
+            if (!matches(f)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,101 @@
+package com.spawneditor.io;
+
+import javax.swing.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// reports changed data files on the EDT, once per burst; our own writes included
+public final class FileWatcher implements Closeable {
+    public static final long QUIET_MS = 300;
+    public static final long MAX_WAIT_MS = 2000;
+
+    private final WatchService service;
+    private final Map<Path, List<Target>> byDir = new HashMap<>();
+    private final Consumer<Set<String>> onChange;
+
+    private static final class Target {
+        final String configured;
+        final Path file; // null when the configured path is itself a watched directory
+
+        Target(String configured, Path file) {
+            this.configured = configured;
+            this.file = file;
+        }
+
+        boolean covers(Path name) {
+            return file != null ? file.getFileName().equals(name) : name.toString().endsWith(".json");
+        }
+    }
+
+    public FileWatcher(Collection<String> paths, Consumer<Set<String>> onChange) throws IOException {
+        this.onChange = onChange;
+        this.service = FileSystems.getDefault().newWatchService();
+        for (String p : paths) {
+            if (p == null || p.isEmpty()) continue;
+            Path abs = java.nio.file.Paths.get(p).toAbsolutePath().normalize();
+            Path dir = Files.isDirectory(abs) ? abs : abs.getParent();
+            if (dir == null || !Files.isDirectory(dir)) continue;
+            List<Target> targets = byDir.get(dir);
+            if (targets == null) {
+                dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                targets = new ArrayList<>();
+                byDir.put(dir, targets);
+            }
+            targets.add(new Target(p, dir == abs ? null : abs));
+        }
+        Thread t = new Thread(this::run, "spawn-editor-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<String> changed = new LinkedHashSet<>();
+                collect(service.take(), changed);
+                long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+                WatchKey key;
+                while (System.currentTimeMillis() < deadline && (key = service.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                if (!changed.isEmpty()) SwingUtilities.invokeLater(() -> onChange.accept(changed));
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        List<Target> targets = byDir.getOrDefault((Path) key.watchable(), Collections.emptyList());
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                for (Target t : targets) changed.add(t.configured);
+                continue;
+            }
+            Path name = (Path) ev.context();
+            for (Target t : targets) {
+                if (t.covers(name)) changed.add(t.configured);
+            }
+        }
+        key.reset();
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package com.spawneditor.io;
 
-import com.google.gson.*;
 import com.spawneditor.model.ActionType;
 import com.spawneditor.model.Direction;
+import com.spawneditor.model.SpawnColumns;
 import com.spawneditor.model.SpawnEntry;
 import com.spawneditor.model.SpawnProject;
 import com.spawneditor.model.Tile;
+import com.spawneditor.model.TileKey;
 import com.spawneditor.util.Ui;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class JsonStore {
+    private static final long COMPACT_AFTER_IDLE_MS = 3000;
+
     private final String path;
-    private final List<String> allLines = new ArrayList<>();
-    private int arrayStartLine = -1;
-    private int arrayEndLine = -1;
+    private final PersistenceExecutor persistence = PersistenceExecutor.shared();
+    private final Object writeTask = new Object();
+    private final Object journalTask = new Object();
+    private final Object compactTask = new Object();
+    private final Object documentTask = new Object();
+    private final FileStamps stamps = new FileStamps();
+    private SpawnDocument doc;
+    // directory mode: one document per region file, see SpawnShards
+    private boolean sharded;
+    private final Map<Long, SpawnDocument> shards = new HashMap<>();
+    private final Set<Long> dirtyShards = new LinkedHashSet<>();
+    private boolean documentDeferred;
+    private FileFingerprint fingerprint;
+    private long lastWriteBytes;
+    private long totalBytesWritten;
+    private boolean journaled;
+    private FileChannel journal;
+    private final StringBuilder unwrittenRecords = new StringBuilder();
+    // open batch: documents are checkpointed on first touch and nothing is written until commit
+    private boolean inBatch;
+    private final Map<SpawnDocument, SpawnDocument.Checkpoint> batchCheckpoints = new IdentityHashMap<>();
+    private final Set<Long> batchCreatedShards = new HashSet<>();
+    private final Set<Long> batchDirtyShards = new HashSet<>();
+    private int batchRecordsLength;
 
-    private static class Key {
+    static final class Key {
         final ActionType action; final int x,y,z;
         Key(ActionType a, int x, int y, int z) {
             this.action=a; this.x=x; this.y=y; this.z=z;
@@ -30,350 +61,581 @@ public class JsonStore {
         }
         @Override
         public int hashCode() {
-            return Objects.hash(action,x,y,z);
+            return Long.hashCode(TileKey.of(x,y,z)) * 31 + action.ordinal();
         }
     }
 
-    private static class Meta {
-        int startLine, endLine;
-        boolean trailingComma;
-        String indent;
-        Key key;
-    }
-
-    private final List<Meta> metas = new ArrayList<>();
-    private final Map<Key, Integer> indexByKey = new HashMap<>();
-
     public JsonStore(String path) {
         this.path = path;
     }
 
     public void loadInto(SpawnProject project) {
+        loadInto(project, null);
+    }
+
+    // a snapshot hit restores the entries; the document is parsed later, off the EDT
+    public void loadInto(SpawnProject project, SnapshotCache cache) {
+        loadInto(project, cache, null);
+    }
+
+    public void loadInto(SpawnProject project, SnapshotCache cache, LoadProgress progress) {
         project.clear();
-        allLines.clear();
-        metas.clear();
-        indexByKey.clear();
-        arrayStartLine=-1; arrayEndLine=-1;
+        List<SpawnEntry> loaded = new ArrayList<>();
+        persistence.flush();
+        synchronized (this) {
+            persistence.cancel(compactTask);
+            closeJournal();
+            doc = null;
+            shards.clear();
+            dirtyShards.clear();
+            inBatch = false;
+            batchCheckpoints.clear();
+            documentDeferred = false;
+            fingerprint = null;
+        }
+        stamps.clear();
         File f = new File(path);
         if (!f.exists()) return;
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
-            String ln; while ((ln = br.readLine()) != null) allLines.add(ln);
-        } catch (Exception e) {
-            Ui.error("Failed to read JSON: " + e.getMessage());
+        if (isDump()) {
+            loadDump(project, f, progress);
+            return;
+        }
+        if (f.isDirectory()) {
+            loadShards(f, loaded, progress);
+            noteFiles();
+            project.getEntries().addAll(loaded);
             return;
         }
-        try (Reader reader = new StringReader(String.join("\n", allLines))) {
-            JsonElement el = JsonParser.parseReader(reader);
-            if (el == null || !el.isJsonArray()) {
-                Ui.warn("Invalid JSON root (expected array): " + path);
+        boolean journalLeft = journalFile().exists() || compactingFile().exists();
+        if (cache != null) {
+            FileFingerprint cached = journalLeft ? null : cache.restoreSpawns(path, loaded);
+            if (cached != null) {
+                synchronized (this) {
+                    documentDeferred = true;
+                    fingerprint = cached;
+                }
+                persistence.schedule(documentTask, this::ensureDocument);
+                noteFiles();
+                project.getEntries().addAll(loaded);
                 return;
             }
-            JsonArray arr = el.getAsJsonArray();
-            for (JsonElement e : arr) {
-                if (!e.isJsonObject()) continue;
-                SpawnEntry entry = parseEntry(e.getAsJsonObject());
-                if (entry != null) project.getEntries().add(entry);
-            }
+            if (journalLeft) cache.miss();
+        }
+        FileFingerprint readFingerprint = FileFingerprint.of(f);
+        SpawnDocument read;
+        try {
+            read = SpawnDocument.read(f, loaded, progress);
         } catch (Exception ex) {
             Ui.error("Failed to parse JSON: " + ex.getMessage());
             return;
         }
-        findArrayBracketLines();
-        if (arrayStartLine < 0 || arrayEndLine < 0 || arrayEndLine <= arrayStartLine) return;
-        int i = arrayStartLine + 1;
-        while (i < arrayEndLine) {
-            String line = allLines.get(i);
-            String trimmed = line.trim();
-            if (trimmed.isEmpty() || trimmed.startsWith("//")) { i++; continue; }
-            int bracePos = line.indexOf('{');
-            if (bracePos < 0) { i++; continue; }
-            int start = i;
-            int open = 0;
-            boolean found = false;
-            int j = i;
-            while (j < arrayEndLine) {
-                String L = allLines.get(j);
-                for (int k = 0; k < L.length(); k++) {
-                    char c = L.charAt(k);
-                    if (c == '{') open++;
-                    else if (c == '}') {
-                        open--;
-                        if (open == 0) { found = true; }
+        if (!read.isArrayRoot()) {
+            Ui.warn("Invalid JSON root (expected array): " + path);
+            return;
+        }
+        if (read.isIndexed() && journalLeft) {
+            try {
+                if (replayJournal(read, loaded) > 0) {
+                    long written = LineFiles.replaceAtomically(f, read.snapshotForWrite()::writeTo);
+                    synchronized (this) {
+                        totalBytesWritten += written;
                     }
+                    readFingerprint = FileFingerprint.of(f);
                 }
-                if (found) break;
-                j++;
+                Files.deleteIfExists(compactingFile().toPath());
+                Files.deleteIfExists(journalFile().toPath());
+            } catch (IOException ex) {
+                Ui.error("Failed to apply spawns journal: " + ex.getMessage());
+            }
+        }
+        synchronized (this) {
+            sharded = false;
+            doc = read;
+            fingerprint = readFingerprint;
+        }
+        noteFiles();
+        project.getEntries().addAll(loaded);
+    }
+
+    // over Paths.READ_ONLY_ABOVE_MB, the region files taken together; a journal left over still
+    // has to be replayed, so that load goes the usual way
+    private boolean isDump() {
+        if (Paths.READ_ONLY_ABOVE_MB <= 0 || journalFile().exists() || compactingFile().exists()) return false;
+        long bytes = 0;
+        for (File file : files()) bytes += file.length();
+        return bytes > Paths.READ_ONLY_ABOVE_MB * 1024L * 1024L;
+    }
+
+    // rows are streamed straight into columns, keeping neither lines nor entry objects. With no
+    // document nothing can be written back, and with no fingerprint the snapshot cache leaves
+    // the spawns out
+    private void loadDump(SpawnProject project, File f, LoadProgress progress) {
+        SpawnColumns columns = new SpawnColumns();
+        List<String> errors = new ArrayList<>();
+        for (File file : files()) {
+            try (Reader r = new InputStreamReader(LoadProgress.open(file, progress), StandardCharsets.UTF_8)) {
+                boolean isArray = new SpawnJsonReader(r, null).readArray((e, start, end, trailingComma) -> {
+                    if (e != null) columns.add(e);
+                });
+                if (!isArray) errors.add("Invalid JSON root (expected array): " + file);
+            } catch (Exception ex) {
+                errors.add(file.getName() + ": " + ex.getMessage());
             }
-            if (!found) break;
-            int end = j;
-            boolean trailingComma = lineHasTrailingComma(end);
-            String objText = String.join("\n", allLines.subList(start, end + 1));
-            JsonObject obj;
-            try { obj = JsonParser.parseString(objText).getAsJsonObject(); }
-            catch (Exception ignore) { obj = null; }
-            if (obj != null) {
-                SpawnEntry e = parseEntry(obj);
-                if (e != null) {
-                    Key key = new Key(e.action, e.tile.x, e.tile.y, e.tile.z);
-                    Meta m = new Meta();
-                    m.startLine = start;
-                    m.endLine = end;
-                    m.trailingComma = trailingComma;
-                    m.indent = leadingWhitespace(allLines.get(start));
-                    m.key = key;
-                    metas.add(m);
-                    indexByKey.put(key, metas.size() - 1);
+        }
+        if (!errors.isEmpty()) {
+            Ui.error("Failed to parse JSON: " + String.join("\n", errors));
+            if (!f.isDirectory()) return;
+        }
+        synchronized (this) {
+            sharded = f.isDirectory();
+        }
+        noteFiles();
+        project.setDump(columns);
+    }
+
+    // checked on the persistence thread, so a write in progress isn't taken for another tool's
+    public boolean changedOnDisk() {
+        boolean[] changed = {false};
+        persistence.run(() -> changed[0] = stamps.differ(files()));
+        return changed[0];
+    }
+
+    private List<File> files() {
+        File f = new File(path);
+        if (f.isDirectory()) return new ArrayList<>(SpawnShards.list(f).values());
+        return f.isFile() ? List.of(f) : List.of();
+    }
+
+    private void noteFiles() {
+        stamps.clear();
+        for (File f : files()) stamps.note(f);
+    }
+
+    // shards are parsed in parallel and their entries concatenated in region order
+    private void loadShards(File dir, List<SpawnEntry> loaded, LoadProgress progress) {
+        Map<Long, File> files = SpawnShards.list(dir);
+        Map<Long, SpawnDocument> docs = new ConcurrentHashMap<>();
+        Map<Long, List<SpawnEntry>> entries = new ConcurrentHashMap<>();
+        Queue<String> errors = new ConcurrentLinkedQueue<>();
+        files.entrySet().parallelStream().forEach(shard -> {
+            List<SpawnEntry> out = new ArrayList<>();
+            try {
+                SpawnDocument d = SpawnDocument.read(shard.getValue(), out, progress);
+                if (!d.isArrayRoot()) {
+                    errors.add("Invalid JSON root (expected array): " + shard.getValue());
+                    return;
                 }
+                docs.put(shard.getKey(), d);
+                entries.put(shard.getKey(), out);
+            } catch (Exception ex) {
+                errors.add(shard.getValue().getName() + ": " + ex.getMessage());
             }
-            i = end + 1;
-        }
-    }
-
-    private SpawnEntry parseEntry(JsonObject o) {
-        String actionStr = getString(o, "action", null);
-        if (actionStr == null) return null;
-        ActionType action = ActionType.fromWire(actionStr);
-        if (action == null) return null;
-        JsonObject t = o.getAsJsonObject("tile");
-        if (t == null) return null;
-        Integer x = getInt(t, "x", null);
-        Integer y = getInt(t, "y", null);
-        Integer z = getInt(t, "z", null);
-        if (x == null || y == null || z == null) return null;
-        SpawnEntry entry = new SpawnEntry();
-        entry.action = action;
-        entry.tile = new Tile(x, y, z);
-        switch (action) {
-            case SPAWN_OBJECT:
-            case SPAWN_OVER_OBJECT:
-                entry.id = getInt(o, "id", null);
-                entry.type = getInt(o, "type", 10);
-                Integer rawRot = getInt(o, "rotation", 0);
-                entry.rotation = rawRot != null ? normalizeRotSigned(rawRot) : 0;
-                break;
-            case SPAWN_NPC:
-                entry.id = getInt(o, "id", null);
-                entry.walkRadius = getInt(o, "walk_radius", 0);
-                entry.aggressive = getBool(o, "aggressive", false);
-                String d = getString(o, "direction", "NORTH");
-                entry.direction = Direction.safeValueOf(d);
-                break;
-            case DELETE_OBJECT:
-                break;
+        });
+        if (!errors.isEmpty()) Ui.error("Failed to parse JSON: " + String.join("\n", errors));
+        for (Long region : files.keySet()) {
+            List<SpawnEntry> out = entries.get(region);
+            if (out != null) loaded.addAll(out);
+        }
+        synchronized (this) {
+            sharded = true;
+            shards.putAll(docs);
         }
-        return entry;
     }
 
-    private void findArrayBracketLines() {
-        for (int i = 0; i < allLines.size(); i++) {
-            if (allLines.get(i).indexOf('[') >= 0) { arrayStartLine = i; break; }
+    private SpawnDocument documentFor(SpawnEntry e, boolean create) {
+        if (!sharded) return doc;
+        long region = SpawnShards.regionOf(e.tile.x, e.tile.y);
+        SpawnDocument d = shards.get(region);
+        if (d == null && create) {
+            d = SpawnDocument.emptyArray();
+            shards.put(region, d);
+            if (inBatch) batchCreatedShards.add(region);
         }
-        for (int i = allLines.size() - 1; i >= 0; i--) {
-            if (allLines.get(i).indexOf(']') >= 0) { arrayEndLine = i; break; }
+        return d;
+    }
+
+    private void checkpoint(SpawnDocument d) {
+        if (inBatch && !batchCheckpoints.containsKey(d)) batchCheckpoints.put(d, d.checkpoint());
+    }
+
+    // pending writes are flushed first, so a rollback lands on what is already on disk
+    public void beginBatch() {
+        persistence.flush();
+        synchronized (this) {
+            if (inBatch) throw new IllegalStateException("A batch is already open");
+            ensureDocument();
+            inBatch = true;
+            batchCheckpoints.clear();
+            batchCreatedShards.clear();
+            batchDirtyShards.clear();
+            batchDirtyShards.addAll(dirtyShards);
+            batchRecordsLength = unwrittenRecords.length();
         }
     }
 
-    private boolean lineHasTrailingComma(int lineIndex) {
-        String s = allLines.get(lineIndex).trim();
-        if (s.endsWith(",")) return true;
-        int next = nextNonEmptyLine(lineIndex + 1);
-        if (next >= 0) {
-            String t = allLines.get(next).trim();
-            if (t.startsWith(",")) return true;
+    public synchronized void commit() {
+        if (!inBatch) throw new IllegalStateException("No batch is open");
+        inBatch = false;
+        boolean changed = !batchCheckpoints.isEmpty();
+        batchCheckpoints.clear();
+        batchCreatedShards.clear();
+        batchDirtyShards.clear();
+        if (!changed) return;
+        if (journaled && !sharded) {
+            persistence.schedule(journalTask, this::writeJournal);
+            persistence.scheduleIdle(compactTask, this::compactNow, COMPACT_AFTER_IDLE_MS);
+        } else {
+            persistence.schedule(writeTask, this::writeFile);
         }
-        return false;
     }
 
-    private int nextNonEmptyLine(int from) {
-        for (int i = from; i < allLines.size(); i++) {
-            String t = allLines.get(i).trim();
-            if (!t.isEmpty()) return i;
+    public synchronized void rollback() {
+        if (!inBatch) throw new IllegalStateException("No batch is open");
+        inBatch = false;
+        batchCheckpoints.forEach(SpawnDocument::restore);
+        for (long region : batchCreatedShards) shards.remove(region);
+        dirtyShards.clear();
+        dirtyShards.addAll(batchDirtyShards);
+        unwrittenRecords.setLength(batchRecordsLength);
+        batchCheckpoints.clear();
+        batchCreatedShards.clear();
+        batchDirtyShards.clear();
+    }
+
+    private synchronized void ensureDocument() {
+        if (!documentDeferred) return;
+        documentDeferred = false;
+        try {
+            doc = SpawnDocument.read(new File(path), new ArrayList<>());
+        } catch (Exception ex) {
+            Ui.error("Failed to parse JSON: " + ex.getMessage());
         }
-        return -1;
     }
 
-    private static String leadingWhitespace(String s) {
-        int i = 0; while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
-        return s.substring(0, i);
+    String path() {
+        return path;
+    }
+
+    synchronized FileFingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    // edits go to a journal, folded into spawns.json once the editor is idle or closed
+    public void setJournaled(boolean on) {
+        synchronized (this) {
+            boolean was = journaled;
+            journaled = on;
+            if (on || !was) return;
+        }
+        compact();
     }
 
     public synchronized void upsertOne(SpawnEntry e) {
-        if (arrayStartLine < 0 || arrayEndLine < 0) {
+        ensureDocument();
+        SpawnDocument d = documentFor(e, true);
+        if (d == null || !d.isIndexed()) {
             Ui.error("spawns.json not loaded/indexed; cannot edit in-place.");
             return;
         }
-        Key key = new Key(e.action, e.tile.x, e.tile.y, e.tile.z);
-        Integer idx = indexByKey.get(key);
-        if (idx != null) {
-            replaceObjectLines(idx, renderObject(e, metas.get(idx).indent, metas.get(idx).trailingComma));
-        } else {
-            appendObject(e);
-        }
+        checkpoint(d);
+        applyUpsert(d, e);
+        persist("upsert", e);
     }
 
-    public synchronized void deleteOne(SpawnEntry e) {
-        if (arrayStartLine < 0 || arrayEndLine < 0) {
-            deleteViaRewrite(e);
+    // adds e at the end even if its action + tile is taken, shadowing the existing entry
+    public synchronized void appendOne(SpawnEntry e) {
+        ensureDocument();
+        SpawnDocument d = documentFor(e, true);
+        if (d == null || !d.isIndexed()) {
+            Ui.error("spawns.json not loaded/indexed; cannot edit in-place.");
             return;
         }
-        Key key = new Key(e.action, e.tile.x, e.tile.y, e.tile.z);
-        Integer idx = indexByKey.get(key);
-        if (idx != null) {
-            Meta m = metas.get(idx);
-            int start = m.startLine;
-            int end   = m.endLine;
-            Integer commaLineIndex = null;
-            boolean commaOnEndLine = allLines.get(end).trim().endsWith(",");
-            if (m.trailingComma && !commaOnEndLine) {
-                int ci = nextNonEmptyLine(end + 1);
-                if (ci >= 0) {
-                    String t = allLines.get(ci).trim();
-                    if (t.equals(",")) commaLineIndex = ci;
-                    else if (t.startsWith(",")) commaLineIndex = ci;
+        checkpoint(d);
+        String indent = d.appendIndent();
+        d.append(keyOf(e), indent, renderObject(e, indent, false));
+        persist("append", e);
+    }
+
+    public boolean deleteOne(SpawnEntry e) {
+        synchronized (this) {
+            ensureDocument();
+            SpawnDocument d = documentFor(e, false);
+            if (d != null && d.isIndexed()) {
+                SpawnDocument.Span span = d.find(keyOf(e));
+                if (span != null) {
+                    checkpoint(d);
+                    d.delete(span);
+                    persist("delete", e);
+                    return true;
                 }
             }
-            int removed = (end - start + 1);
-            for (int i = 0; i < removed; i++) allLines.remove(start);
-            if (commaLineIndex != null) {
-                commaLineIndex -= removed;
-                String s = allLines.get(commaLineIndex);
-                String t = s.trim();
-                if (t.equals(",")) {
-                    allLines.remove(commaLineIndex);
-                    removed += 1;
-                } else {
-                    int pos = s.indexOf(',');
-                    if (pos >= 0) {
-                        allLines.set(commaLineIndex, s.substring(0, pos) + s.substring(pos + 1));
-                    }
-                }
+            if (sharded) {
+                Ui.warn("Delete: entry not found in its region file (action + tile).");
+                return false;
+            }
+            if (inBatch) {
+                Ui.warn("Delete: entry can't be removed in-place, so it can't be part of a batch (action + tile).");
+                return false;
             }
-            metas.remove((int) idx);
-            rebuildIndexMapAndShiftFrom(start, -removed);
-            writeAll();
-            return;
         }
-        deleteViaRewrite(e);
+        persistence.flush();
+        compact();
+        return deleteViaRewrite(e);
+    }
+
+    private static Key keyOf(SpawnEntry e) {
+        return new Key(e.action, e.tile.x, e.tile.y, e.tile.z);
+    }
+
+    private void applyUpsert(SpawnDocument d, SpawnEntry e) {
+        Key key = keyOf(e);
+        SpawnDocument.Span span = d.find(key);
+        if (span != null) {
+            d.replace(span, renderObject(e, span.indent, span.trailingComma));
+        } else {
+            String indent = d.appendIndent();
+            d.append(key, indent, renderObject(e, indent, false));
+        }
+    }
+
+    // edits only touch memory here; the disk work is queued on the persistence thread
+    private void persist(String op, SpawnEntry e) {
+        if (journaled && !sharded) {
+            unwrittenRecords.append(op).append(' ');
+            for (String ln : renderObject(e, "", false)) unwrittenRecords.append(ln.trim());
+            unwrittenRecords.append('\n');
+            if (inBatch) return;
+            persistence.schedule(journalTask, this::writeJournal);
+            persistence.scheduleIdle(compactTask, this::compactNow, COMPACT_AFTER_IDLE_MS);
+        } else {
+            if (sharded) dirtyShards.add(SpawnShards.regionOf(e.tile.x, e.tile.y));
+            if (inBatch) return;
+            persistence.schedule(writeTask, this::writeFile);
+        }
+    }
+
+    private File journalFile() {
+        return new File(path + ".journal");
     }
 
-    private void deleteViaRewrite(SpawnEntry target) {
+    private File compactingFile() {
+        return new File(path + ".journal.compacting");
+    }
+
+    private void writeJournal() {
+        String records;
+        synchronized (this) {
+            if (inBatch || unwrittenRecords.length() == 0) return;
+            records = unwrittenRecords.toString();
+            unwrittenRecords.setLength(0);
+        }
         try {
-            JsonElement root = JsonParser.parseString(String.join("\n", allLines));
-            if (root == null || !root.isJsonArray()) {
-                Ui.warn("spawns.json root is not an array; cannot delete in-place. Skipping.");
-                return;
-            }
-            JsonArray arr = root.getAsJsonArray();
-            JsonArray out = new JsonArray();
-            boolean removedOne = false;
-            for (JsonElement el : arr) {
-                boolean match = !removedOne && elementMatches(el, target);
-                if (match) {
-                    removedOne = true;
-                    continue;
+            synchronized (this) {
+                if (journal == null) {
+                    journal = FileChannel.open(journalFile().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
                 }
-                out.add(el);
             }
-            if (!removedOne) {
-                Ui.warn("Delete: entry not found in spawns.json (action + tile).");
-                return;
-            }
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-                gson.toJson(out, w);
+            ByteBuffer buf = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) journal.write(buf);
+            journal.force(false);
+            recordWrite(buf.capacity());
+        } catch (IOException ex) {
+            synchronized (this) {
+                closeJournal();
             }
-            loadInto(new com.spawneditor.model.SpawnProject());
-        } catch (Exception ex) {
-            Ui.error("Failed to delete via rewrite: " + ex.getMessage());
+            Ui.error("Failed to write spawns journal, saving directly: " + ex.getMessage());
+            writeFile();
         }
     }
 
-    private static boolean elementMatches(JsonElement el, SpawnEntry target) {
-        if (el == null || !el.isJsonObject()) return false;
-        JsonObject o = el.getAsJsonObject();
-        String act = getString(o, "action", null);
-        if (act == null || ActionType.fromWire(act) != target.action) return false;
-        JsonObject t = o.getAsJsonObject("tile");
-        if (t == null) return false;
-        Integer x = getInt(t, "x", null);
-        Integer y = getInt(t, "y", null);
-        Integer z = getInt(t, "z", null);
-        return x != null && y != null && z != null && x == target.tile.x && y == target.tile.y && z == target.tile.z;
-    }
-
-    private void replaceObjectLines(int metaIndex, List<String> newLines) {
-        Meta m = metas.get(metaIndex);
-        int oldCount = m.endLine - m.startLine + 1;
-        int delta = newLines.size() - oldCount;
-        for (int i = 0; i < oldCount; i++) allLines.remove(m.startLine);
-        allLines.addAll(m.startLine, newLines);
-        m.endLine = m.startLine + newLines.size() - 1;
-        shiftAfter(m.startLine + newLines.size(), delta, metaIndex + 1);
-        writeAll();
-    }
-
-    private void appendObject(SpawnEntry e) {
-        if (!metas.isEmpty()) {
-            Meta last = metas.get(metas.size() - 1);
-            if (!last.trailingComma) {
-                String s = allLines.get(last.endLine);
-                if (s.trim().endsWith("}")) {
-                    allLines.set(last.endLine, s + ",");
-                    last.trailingComma = true;
+    private int replayJournal(SpawnDocument target, List<SpawnEntry> loaded) throws IOException {
+        // last position per key, and the duplicate each position shadows
+        Map<Key, Integer> at = new HashMap<>();
+        int[] shadowed = new int[Math.max(16, loaded.size())];
+        for (int i = 0; i < loaded.size(); i++) shadowed[i] = orNone(at.put(keyOf(loaded.get(i)), i));
+        int applied = 0;
+        for (File jf : new File[] {compactingFile(), journalFile()}) {
+            if (!jf.exists()) continue;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(jf), StandardCharsets.UTF_8))) {
+                String ln;
+                while ((ln = br.readLine()) != null) {
+                    int sp = ln.indexOf(' ');
+                    if (sp < 0) break;
+                    SpawnEntry e;
+                    try {
+                        e = new SpawnJsonReader(new StringReader(ln.substring(sp + 1)), new ArrayList<>()).readObject();
+                    } catch (IOException torn) {
+                        break; // the last record of a crashed session may be incomplete
+                    }
+                    if (e == null) continue;
+                    Key key = keyOf(e);
+                    String op = ln.substring(0, sp);
+                    if (op.equals("upsert")) {
+                        applyUpsert(target, e);
+                        Integer i = at.get(key);
+                        if (i != null) {
+                            loaded.set(i, e);
+                        } else {
+                            shadowed = push(shadowed, loaded.size(), -1);
+                            at.put(key, loaded.size());
+                            loaded.add(e);
+                        }
+                    } else if (op.equals("append")) {
+                        String indent = target.appendIndent();
+                        target.append(key, indent, renderObject(e, indent, false));
+                        shadowed = push(shadowed, loaded.size(), orNone(at.put(key, loaded.size())));
+                        loaded.add(e);
+                    } else if (op.equals("delete")) {
+                        SpawnDocument.Span span = target.find(key);
+                        if (span != null) target.delete(span);
+                        Integer i = at.remove(key);
+                        if (i != null) {
+                            loaded.set(i, null);
+                            if (shadowed[i] >= 0) at.put(key, shadowed[i]);
+                        }
+                    } else {
+                        continue;
+                    }
+                    applied++;
                 }
             }
         }
-        String indent = metas.isEmpty() ? (leadingWhitespace(allLines.get(arrayStartLine)) + "  ") : metas.get(0).indent;
-        List<String> objLines = renderObject(e, indent, false);
-        int insertAt = arrayEndLine;
-        allLines.addAll(insertAt, objLines);
-        int added = objLines.size();
-        Meta m = new Meta();
-        m.startLine = insertAt;
-        m.endLine = insertAt + objLines.size() - 1;
-        m.trailingComma = false;
-        m.indent = indent;
-        m.key = new Key(e.action, e.tile.x, e.tile.y, e.tile.z);
-        metas.add(m);
-        arrayEndLine += added;
-        rebuildIndexMap();
-        writeAll();
-    }
-
-    private void shiftAfter(int startLineExclusive, int delta, int metaStartIndex) {
-        if (delta == 0) return;
-        for (int i = metaStartIndex; i < metas.size(); i++) {
-            Meta mm = metas.get(i);
-            if (mm.startLine >= startLineExclusive) {
-                mm.startLine += delta;
-                mm.endLine += delta;
-            }
+        loaded.removeIf(Objects::isNull);
+        return applied;
+    }
+
+    private static int orNone(Integer i) {
+        return i != null ? i : -1;
+    }
+
+    private static int[] push(int[] a, int at, int value) {
+        if (at == a.length) a = Arrays.copyOf(a, a.length * 2);
+        a[at] = value;
+        return a;
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException ignored) {
         }
-        arrayEndLine += delta;
+        journal = null;
     }
 
-    private void rebuildIndexMapAndShiftFrom(int fromLine, int deltaLines) {
-        if (deltaLines != 0) {
-            for (Meta mm : metas) {
-                if (mm.startLine >= fromLine) {
-                    mm.startLine += deltaLines;
-                    mm.endLine += deltaLines;
-                }
+    public void compact() {
+        persistence.run(this::compactNow);
+    }
+
+    // the journal is moved aside under the lock; edits meanwhile start a fresh one
+    private void compactNow() {
+        File pending = compactingFile();
+        SpawnDocument.Snapshot snap;
+        synchronized (this) {
+            persistence.cancel(compactTask);
+            File jf = journalFile();
+            if (inBatch || doc == null || (!jf.exists() && !pending.exists() && unwrittenRecords.length() == 0)) return;
+            closeJournal();
+            try {
+                moveAside(jf, pending);
+            } catch (IOException ex) {
+                Ui.error("Failed to compact spawns journal: " + ex.getMessage());
+                return;
+            }
+            unwrittenRecords.setLength(0);
+            snap = doc.snapshotForWrite();
+        }
+        try {
+            recordWrite(LineFiles.replaceAtomically(new File(path), snap::writeTo));
+            stamps.note(new File(path));
+            Files.deleteIfExists(pending.toPath());
+        } catch (IOException ex) {
+            synchronized (this) {
+                if (doc != null) doc.markUnsynced();
             }
-            arrayEndLine += deltaLines;
+            Ui.error("Failed to compact spawns journal: " + ex.getMessage());
         }
-        rebuildIndexMap();
     }
 
-    private void rebuildIndexMap() {
-        indexByKey.clear();
-        for (int i = 0; i < metas.size(); i++) {
-            indexByKey.put(metas.get(i).key, i);
+    private static void moveAside(File journal, File pending) throws IOException {
+        if (!journal.exists()) return;
+        if (!pending.exists()) {
+            Files.move(journal.toPath(), pending.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(pending, true)) {
+            Files.copy(journal.toPath(), out);
+        }
+        Files.delete(journal.toPath());
+    }
+
+    // flush barrier for exit and for switching files: nothing queued for this store is lost
+    public void close() {
+        persistence.flush();
+        compact();
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    // one streamed pass, each element copied as written and the last match dropped; with duplicates
+    // each earlier match moves to the next match's place, so only one element is ever held back
+    private boolean deleteViaRewrite(SpawnEntry target) {
+        File f = new File(path);
+        String sep;
+        synchronized (this) {
+            if (doc == null) {
+                Ui.warn("spawns.json not loaded; cannot delete. Skipping.");
+                return false;
+            }
+            sep = doc.lineSeparator();
+        }
+        try {
+            LineFiles.replaceAtomically(f, w -> {
+                try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+                    removeLastMatch(in, target, new SpawnArrayWriter(w, sep));
+                }
+            });
+            loadInto(new com.spawneditor.model.SpawnProject());
+            return true;
+        } catch (NoMatch ex) {
+            Ui.warn("Delete: entry not found in spawns.json (action + tile).");
+        } catch (NotAnArray ex) {
+            Ui.warn("spawns.json root is not an array; cannot delete in-place. Skipping.");
+        } catch (Exception ex) {
+            Ui.error("Failed to delete via rewrite: " + ex.getMessage());
         }
+        return false;
+    }
+
+    private static final class NotAnArray extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // thrown from inside the rewrite so the file is left as it was
+    private static final class NoMatch extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static void removeLastMatch(Reader in, SpawnEntry target, SpawnArrayWriter out) throws IOException {
+        List<List<String>> held = new ArrayList<>(1);
+        boolean isArray = new SpawnJsonReader(in, new ArrayList<>()).readElements((e, text) -> {
+            if (e != null && e.action == target.action && e.tile.equals(target.tile)) {
+                if (held.isEmpty()) {
+                    held.add(text);
+                    return;
+                }
+                text = held.set(0, text);
+            }
+            out.copy(text);
+        });
+        if (!isArray) throw new NotAnArray();
+        if (held.isEmpty()) throw new NoMatch();
+        out.finish();
     }
 
-    private List<String> renderObject(SpawnEntry e, String indent, boolean trailingComma) {
+    static List<String> renderObject(SpawnEntry e, String indent, boolean trailingComma) {
         List<String> out = new ArrayList<>();
         String p1 = indent;
         String p2 = indent + "  ";
@@ -417,81 +679,90 @@ public class JsonStore {
         return v == null ? "0" : String.valueOf(v);
     }
 
-    private void writeAll() {
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-            for (String ln : allLines) {
-                bw.write(ln); bw.newLine();
+    private void writeFile() {
+        Map<File, SpawnDocument> targets = new LinkedHashMap<>();
+        synchronized (this) {
+            if (inBatch) return;
+            if (sharded) {
+                for (long region : dirtyShards) targets.put(SpawnShards.fileFor(new File(path), region), shards.get(region));
+                dirtyShards.clear();
+            } else if (doc != null) {
+                targets.put(new File(path), doc);
             }
-        } catch (Exception ex) {
-            Ui.error("Failed to save JSON: " + ex.getMessage());
         }
+        targets.forEach(this::writeDocument);
     }
 
-    public void save(SpawnProject project) {
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-            JsonArray arr = new JsonArray();
-            for (SpawnEntry e : project.getEntries()) {
-                JsonObject o = new JsonObject();
-                o.addProperty("action", e.action.wire);
-                JsonObject t = new JsonObject();
-                t.addProperty("x", e.tile.x);
-                t.addProperty("y", e.tile.y);
-                t.addProperty("z", e.tile.z);
-                o.add("tile", t);
-                switch (e.action) {
-                    case SPAWN_OBJECT:
-                    case SPAWN_OVER_OBJECT:
-                        o.addProperty("id", e.id);
-                        o.addProperty("type", e.type != null ? e.type : 10);
-                        int rot = e.rotation != null ? normalizeRotSigned(e.rotation) : 0;
-                        o.addProperty("rotation", rot);
-                        break;
-                    case SPAWN_NPC:
-                        o.addProperty("id", e.id);
-                        o.addProperty("walk_radius", e.walkRadius != null ? e.walkRadius : 0);
-                        o.addProperty("aggressive", e.aggressive != null ? e.aggressive : false);
-                        o.addProperty("direction", e.direction != null ? e.direction.name() : "NORTH");
-                        break;
-                    case DELETE_OBJECT:
-                        break;
+    // same-length edits are patched in place; anything else replaces the file atomically
+    private void writeDocument(File f, SpawnDocument d) {
+        SpawnDocument.Snapshot snap;
+        synchronized (this) {
+            if (!d.hasChanges()) return;
+            // a file someone else rewrote is replaced whole rather than patched at stale offsets
+            if (d.canWriteInPlace() && stamps.matches(f)) {
+                try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                    recordWrite(d.writeChanges(ch));
+                } catch (Exception ex) {
+                    d.markUnsynced();
+                    Ui.error("Failed to save JSON: " + ex.getMessage());
                 }
-                arr.add(o);
+                stamps.note(f);
+                return;
             }
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(arr, writer);
-            writer.flush();
+            snap = d.snapshotForWrite();
+        }
+        try {
+            recordWrite(LineFiles.replaceAtomically(f, snap::writeTo));
+            stamps.note(f);
         } catch (Exception ex) {
+            synchronized (this) {
+                d.markUnsynced();
+            }
             Ui.error("Failed to save JSON: " + ex.getMessage());
         }
     }
 
-    private static int normalizeRotSigned(int raw) {
-        return raw % 4;
+    private synchronized void recordWrite(long bytes) {
+        lastWriteBytes = bytes;
+        totalBytesWritten += bytes;
     }
 
-    private static Integer getInt(JsonObject o, String k, Integer def) {
-        if (o == null || !o.has(k)) return def;
-        try {
-            return o.get(k).getAsInt();
-        } catch (Exception e) {
-            return def;
-        }
+    public synchronized long getLastWriteBytes() {
+        return lastWriteBytes;
     }
-    private static String getString(JsonObject o, String k, String def) {
-        if (o == null || !o.has(k)) return def;
-        try {
-            return o.get(k).getAsString();
-        } catch (Exception e) {
-            return def;
-        }
+
+    public synchronized long getTotalBytesWritten() {
+        return totalBytesWritten;
     }
-    private static boolean getBool(JsonObject o, String k, boolean def) {
-        if (o == null || !o.has(k)) return def;
+
+    public void save(SpawnProject project) {
+        List<SpawnEntry> entries = project.isReadOnly() ? project.dump().asList() : project.getEntries();
+        if (new File(path).isDirectory()) {
+            try {
+                SpawnShards.writeAll(entries, new File(path));
+                noteFiles();
+            } catch (Exception ex) {
+                Ui.error("Failed to save JSON: " + ex.getMessage());
+            }
+            return;
+        }
+        String sep;
+        synchronized (this) {
+            sep = doc != null ? doc.lineSeparator() : System.lineSeparator();
+        }
         try {
-            return o.get(k).getAsBoolean();
-        } catch (Exception e) {
-            return def;
+            LineFiles.replaceAtomically(new File(path), w -> {
+                SpawnArrayWriter out = new SpawnArrayWriter(w, sep);
+                for (SpawnEntry e : entries) out.entry(e);
+                out.finish();
+            });
+            noteFiles();
+        } catch (Exception ex) {
+            Ui.error("Failed to save JSON: " + ex.getMessage());
         }
     }
+
+    private static int normalizeRotSigned(int raw) {
+        return raw % 4;
+    }
 }
@@ -0,0 +1,87 @@
+package com.spawneditor.io;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+final class LineFiles {
+    private LineFiles() {}
+
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else n += 3;
+        }
+        return n;
+    }
+
+    // the separator that reproduces the file byte for byte, or null if none does
+    static String separatorMatching(long textBytes, long lineCount, long fileLength) {
+        if (textBytes + lineCount == fileLength) return "\n";
+        if (textBytes + 2 * lineCount == fileLength) return "\r\n";
+        return null;
+    }
+
+    static long byteLength(List<String> lines, int from, int to, String sep) {
+        long n = 0;
+        int sepBytes = sep.length();
+        for (int i = from; i < to; i++) n += utf8Length(lines.get(i)) + sepBytes;
+        return n;
+    }
+
+    static Writer writerAt(FileChannel ch, long position) throws IOException {
+        ch.position(position);
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    interface Content {
+        void writeTo(Writer w) throws IOException;
+    }
+
+    interface BinaryContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    static long replaceAtomically(File target, Content content) throws IOException {
+        return replaceBytesAtomically(target, out -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            content.writeTo(w);
+            w.flush();
+        });
+    }
+
+    // temp file, sync, rename: a crash leaves the old file or the new one, never half of either
+    static long replaceBytesAtomically(File target, BinaryContent content) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        long size;
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+            content.writeTo(out);
+            out.flush();
+            ch.force(true);
+            size = ch.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,118 @@
+package com.spawneditor.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+// bytes read across the files of one load, as one percentage; shared by the loader threads
+public final class LoadProgress {
+    private final IntConsumer onPercent;
+    private final Map<String, Counter> files = new ConcurrentHashMap<>();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicInteger percent = new AtomicInteger(-1);
+
+    private static final class Counter {
+        final long size;
+        final AtomicLong read = new AtomicLong();
+
+        Counter(long size) {
+            this.size = size;
+        }
+    }
+
+    // onPercent runs on the reading thread, once per whole percent
+    public LoadProgress(IntConsumer onPercent) {
+        this.onPercent = onPercent;
+    }
+
+    // a directory stands for the spawn region files in it
+    public void expect(File f) {
+        if (f.isDirectory()) {
+            for (File region : SpawnShards.list(f).values()) expect(region);
+            return;
+        }
+        Counter c = new Counter(f.isFile() ? f.length() : 0);
+        if (files.putIfAbsent(key(f), c) == null) total.addAndGet(c.size);
+    }
+
+    public void done(File f) {
+        if (f.isDirectory()) {
+            for (File region : SpawnShards.list(f).values()) done(region);
+            return;
+        }
+        Counter c = files.get(key(f));
+        if (c != null) add(c, c.size);
+    }
+
+    public InputStream open(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        Counter c = files.get(key(f));
+        return c == null ? in : new Counting(in, c);
+    }
+
+    // for loaders whose progress is optional
+    static InputStream open(File f, LoadProgress progress) throws IOException {
+        return progress != null ? progress.open(f) : new FileInputStream(f);
+    }
+
+    private static String key(File f) {
+        return f.getAbsolutePath();
+    }
+
+    // a file read twice (a sniff of its first bytes, then the parse) still only counts once
+    private void add(Counter c, long n) {
+        long before, after;
+        do {
+            before = c.read.get();
+            after = Math.min(c.size, before + n);
+        } while (!c.read.compareAndSet(before, after));
+        if (after == before) return;
+        long d = done.addAndGet(after - before);
+        long t = total.get();
+        int pct = t <= 0 ? 100 : (int) Math.min(100, d * 100 / t);
+        for (int was = percent.get(); pct > was; was = percent.get()) {
+            if (percent.compareAndSet(was, pct)) {
+                onPercent.accept(pct);
+                return;
+            }
+        }
+    }
+
+    private final class Counting extends FilterInputStream {
+        private final Counter counter;
+
+        Counting(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) add(counter, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) add(counter, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) add(counter, skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.spawneditor.io;
+
+import com.spawneditor.util.Ui;
+
+import javax.swing.*;
+import java.io.*;
+import java.util.concurrent.CompletableFuture;
+
+// a JSON name list by id, reloaded when its file changes; NpcIndex and ObjectIndex differ only in
+// the cache section and the wording of their messages
+public abstract class NameIndex {
+    private final String path;
+    private final byte cacheKind;
+    private final String noun;
+    private final String jsonName;
+    // swapped whole, never mutated once published, so nameFor needs no lock while a reload runs
+    private volatile NameTable idToName = new NameTable();
+    private volatile FileFingerprint fingerprint;
+    // false until the first load has finished, so views can tell "not loaded yet" from "no name"
+    private volatile boolean loaded;
+    private volatile int reloadCount;
+    private volatile int skippedCount;
+    private volatile long lastReloadMillis;
+    private volatile long totalReloadMillis;
+
+    // noun as in "NPC list", jsonName as in "NPCs JSON"
+    NameIndex(String path, byte cacheKind, String noun, String jsonName) {
+        this.path = path;
+        this.cacheKind = cacheKind;
+        this.noun = noun;
+        this.jsonName = jsonName;
+    }
+
+    public void load() {
+        load(null);
+    }
+
+    public void load(SnapshotCache cache) {
+        load(cache, null);
+    }
+
+    public void load(SnapshotCache cache, LoadProgress progress) {
+        reload(cache, progress);
+    }
+
+    // parsed off the EDT; onChange runs on the EDT, only if the names changed; the future completes after it either way
+    public CompletableFuture<Void> reloadInBackground(Runnable onChange) {
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return reload(null, null);
+            }
+            @Override
+            protected void done() {
+                try {
+                    if (get() && onChange != null) onChange.run();
+                } catch (Exception ignored) {
+                } finally {
+                    finished.complete(null);
+                }
+            }
+        }.execute();
+        return finished;
+    }
+
+    private synchronized boolean reload(SnapshotCache cache, LoadProgress progress) {
+        File f = new File(path);
+        if (!f.exists()) {
+            idToName = new NameTable();
+            fingerprint = null;
+            loaded = true;
+            Ui.warn(noun + " list not found: " + path);
+            return true;
+        }
+        FileFingerprint current = fingerprint;
+        if (current != null && current.matches(f)) {
+            skippedCount++;
+            return false;
+        }
+        long t0 = System.nanoTime();
+        NameTable names = new NameTable();
+        FileFingerprint fp = null;
+        if (cache != null) fp = cache.restoreNames(cacheKind, path, names);
+        if (fp == null) {
+            names = new NameTable();
+            fp = FileFingerprint.of(f);
+            try {
+                if (!NameLists.read(f, progress, names)) Ui.warn(jsonName + " JSON root is not an array: " + path);
+            } catch (Exception e) {
+                fp = null;
+                Ui.error("Failed to load " + noun + " list: " + e.getMessage());
+            }
+        }
+        names.trimToSize();
+        // names before fingerprint: a reader that sees the new fingerprint also sees the new names
+        idToName = names;
+        fingerprint = fp;
+        loaded = true;
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        reloadCount++;
+        lastReloadMillis = ms;
+        totalReloadMillis += ms;
+        return true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getReloadCount() {
+        return reloadCount;
+    }
+
+    public int getSkippedReloadCount() {
+        return skippedCount;
+    }
+
+    public long getLastReloadMillis() {
+        return lastReloadMillis;
+    }
+
+    public long getTotalReloadMillis() {
+        return totalReloadMillis;
+    }
+
+    String path() {
+        return path;
+    }
+
+    FileFingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    public String nameFor(int id) {
+        String n = idToName.get(id);
+        return n != null ? n : Integer.toString(id);
+    }
+
+    public NameTable names() {
+        return idToName;
+    }
+}
@@ -0,0 +1,150 @@
+package com.spawneditor.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+// streams a JSON array of {"id", "name"} objects, or "id - name" lines, into a NameTable
+final class NameLists {
+    private NameLists() {
+    }
+
+    // false when the file is JSON but its root is not an array
+    static boolean read(File f, LoadProgress progress, NameTable into) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(LoadProgress.open(f, progress), StandardCharsets.UTF_8), 1 << 16)) {
+            int first = in.read();
+            while (first != -1 && Character.isWhitespace((char) first)) first = in.read();
+            if (first == -1) return !f.getName().toLowerCase().endsWith(".json");
+            PushbackReader r = new PushbackReader(in, 1);
+            r.unread(first);
+            if (first == '[' || first == '{' || f.getName().toLowerCase().endsWith(".json")) return readJson(r, into);
+            readTxt(r, into);
+            return true;
+        }
+    }
+
+    private static boolean readJson(Reader r, NameTable into) throws IOException {
+        JsonReader json = new JsonReader(r);
+        json.setLenient(true);
+        if (json.peek() != JsonToken.BEGIN_ARRAY) return false;
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            boolean hasId = false;
+            int id = -1;
+            String name = "";
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (key.equals("id")) {
+                    hasId = true;
+                    id = intValue(json, -1);
+                } else if (key.equals("name")) {
+                    name = stringValue(json, "");
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (hasId && id >= 0) into.put(id, name);
+        }
+        json.endArray();
+        return true;
+    }
+
+    // as gson's getAsInt: numbers are truncated, strings must hold a plain int
+    private static int intValue(JsonReader json, int def) throws IOException {
+        JsonToken t = json.peek();
+        if (t == JsonToken.STRING) {
+            try {
+                return Integer.parseInt(json.nextString());
+            } catch (NumberFormatException e) {
+                return def;
+            }
+        }
+        if (t != JsonToken.NUMBER) {
+            json.skipValue();
+            return def;
+        }
+        String s = json.nextString();
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Long.parseLong(s);
+            } catch (NumberFormatException e2) {
+                try {
+                    return new BigDecimal(s).intValue();
+                } catch (NumberFormatException e3) {
+                    return def;
+                }
+            }
+        }
+    }
+
+    private static String stringValue(JsonReader json, String def) throws IOException {
+        switch (json.peek()) {
+            case STRING:
+            case NUMBER:
+                return json.nextString();
+            case BOOLEAN:
+                return Boolean.toString(json.nextBoolean());
+            default:
+                json.skipValue();
+                return def;
+        }
+    }
+
+    // through a reused buffer; the name is the only String made per line
+    private static void readTxt(Reader r, NameTable into) throws IOException {
+        char[] buf = new char[1 << 16];
+        StringBuilder line = new StringBuilder(128);
+        int n;
+        while ((n = r.read(buf)) != -1) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                char c = buf[i];
+                if (c != '\n' && c != '\r') continue;
+                line.append(buf, start, i - start);
+                parseLine(line, into);
+                line.setLength(0);
+                start = i + 1;
+            }
+            line.append(buf, start, n - start);
+        }
+        parseLine(line, into);
+    }
+
+    private static void parseLine(StringBuilder line, NameTable into) {
+        int from = 0, to = line.length();
+        while (from < to && line.charAt(from) <= ' ') from++;
+        while (to > from && line.charAt(to - 1) <= ' ') to--;
+        int dash = line.indexOf(" - ", from);
+        if (dash < 0 || dash + 3 > to) return;
+        int idFrom = from, idTo = dash;
+        while (idFrom < idTo && line.charAt(idFrom) <= ' ') idFrom++;
+        while (idTo > idFrom && line.charAt(idTo - 1) <= ' ') idTo--;
+        if (idFrom == idTo) return;
+        int id;
+        try {
+            id = Integer.parseInt(line, idFrom, idTo, 10);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        int nameFrom = dash + 3, nameTo = to;
+        while (nameFrom < nameTo && line.charAt(nameFrom) <= ' ') nameFrom++;
+        while (nameTo > nameFrom && line.charAt(nameTo - 1) <= ' ') nameTo--;
+        into.put(id, line.substring(nameFrom, nameTo));
+    }
+}
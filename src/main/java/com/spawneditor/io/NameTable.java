@@ -0,0 +1,77 @@
+package com.spawneditor.io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+
+// id -> name, in an array for dense ids and a map for the rest; filled once, then only read
+public final class NameTable {
+    private static final String[] EMPTY = new String[0];
+
+    private String[] dense = EMPTY;
+    private final TreeMap<Integer, String> sparse = new TreeMap<>();
+    private Map<String, String> pool = new HashMap<>();
+    private int size;
+
+    public String get(int id) {
+        if (id >= 0 && id < dense.length) return dense[id];
+        return sparse.isEmpty() ? null : sparse.get(id);
+    }
+
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // in id order
+    public void forEach(ObjIntConsumer<String> action) {
+        for (Map.Entry<Integer, String> e : sparse.headMap(0).entrySet()) action.accept(e.getValue(), e.getKey());
+        for (int id = 0; id < dense.length; id++) {
+            if (dense[id] != null) action.accept(dense[id], id);
+        }
+        for (Map.Entry<Integer, String> e : sparse.tailMap(0).entrySet()) action.accept(e.getValue(), e.getKey());
+    }
+
+    // a later name for the same id replaces the earlier one
+    void put(int id, String name) {
+        if (name == null) return;
+        if (pool == null) pool = new HashMap<>();
+        String shared = pool.putIfAbsent(name, name);
+        if (shared != null) name = shared;
+        if (id >= 0 && id >= dense.length && id < 2 * size + 1024) grow(id + 1);
+        String old;
+        if (id >= 0 && id < dense.length) {
+            old = dense[id];
+            dense[id] = name;
+        } else {
+            old = sparse.put(id, name);
+        }
+        if (old == null) size++;
+    }
+
+    // sparse ids the array now covers move into it, so an id is only ever in one of the two
+    private void grow(int min) {
+        int from = dense.length;
+        dense = Arrays.copyOf(dense, Math.max(min, from + (from >> 1)));
+        Map<Integer, String> covered = sparse.subMap(from, dense.length);
+        for (Map.Entry<Integer, String> e : covered.entrySet()) dense[e.getKey()] = e.getValue();
+        covered.clear();
+    }
+
+    // drops the slack at the end of the array and the dedupe pool once loading is done
+    void trimToSize() {
+        int n = dense.length;
+        while (n > 0 && dense[n - 1] == null) n--;
+        if (n < dense.length) dense = Arrays.copyOf(dense, n);
+        pool = null;
+    }
+}
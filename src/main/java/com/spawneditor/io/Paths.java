@@ -10,5 +10,7 @@ public class Paths {
     public static int RX_MAX = 98;
     public static int RY_MIN = 12;
     public static int RY_MAX = 162;
+    public static boolean JOURNAL_SPAWNS = false; //edits go to spawns.json.journal and are folded in when idle
+    public static int READ_ONLY_ABOVE_MB = 256; //larger spawns are opened read-only, as columns; 0 never does
     public static final int REGION_TILE_SIZE = 64; //this is the same in all revisions
 }
@@ -36,6 +36,8 @@ public final class PathsConfig {
         public Integer rxMax;
         public Integer ryMin;
         public Integer ryMax;
+        public Boolean journalSpawns;
+        public Integer readOnlyAboveMb;
     }
 
     public static Model loadOrNull() {
@@ -59,6 +61,8 @@ public final class PathsConfig {
         m.rxMax = Paths.RX_MAX;
         m.ryMin = Paths.RY_MIN;
         m.ryMax = Paths.RY_MAX;
+        m.journalSpawns = Paths.JOURNAL_SPAWNS;
+        m.readOnlyAboveMb = Paths.READ_ONLY_ABOVE_MB;
         File f = configFile();
         try (Writer w = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8)) {
             GSON.toJson(m, w);
@@ -77,5 +81,7 @@ public final class PathsConfig {
         if (m.rxMax != null) Paths.RX_MAX = m.rxMax;
         if (m.ryMin != null) Paths.RY_MIN = m.ryMin;
         if (m.ryMax != null) Paths.RY_MAX = m.ryMax;
+        if (m.journalSpawns != null) Paths.JOURNAL_SPAWNS = m.journalSpawns;
+        if (m.readOnlyAboveMb != null) Paths.READ_ONLY_ABOVE_MB = m.readOnlyAboveMb;
     }
 }
@@ -0,0 +1,104 @@
+package com.spawneditor.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// the one thread every store writes its files on
+public final class PersistenceExecutor {
+    public static final long DEBOUNCE_MS = 250;
+    private static final PersistenceExecutor SHARED = new PersistenceExecutor();
+
+    private final Map<Object, Pending> pending = new HashMap<>();
+    private volatile Thread worker;
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "spawn-editor-persistence");
+        t.setDaemon(true);
+        worker = t;
+        return t;
+    });
+
+    private static final class Pending {
+        final Runnable task;
+        ScheduledFuture<?> future;
+
+        Pending(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private PersistenceExecutor() {}
+
+    public static PersistenceExecutor shared() {
+        return SHARED;
+    }
+
+    // once, DEBOUNCE_MS after the first request of a burst; same-key requests fold into it
+    public synchronized void schedule(Object key, Runnable task) {
+        if (pending.containsKey(key)) return;
+        submit(key, task, DEBOUNCE_MS);
+    }
+
+    // restarts the countdown on every call, for work that should wait until edits stop
+    public synchronized void scheduleIdle(Object key, Runnable task, long delayMs) {
+        Pending p = pending.remove(key);
+        if (p != null) p.future.cancel(false);
+        submit(key, task, delayMs);
+    }
+
+    public synchronized void cancel(Object key) {
+        Pending p = pending.remove(key);
+        if (p != null) p.future.cancel(false);
+    }
+
+    private void submit(Object key, Runnable task, long delayMs) {
+        Pending p = new Pending(task);
+        p.future = exec.schedule(() -> {
+            synchronized (this) {
+                if (pending.get(key) == p) pending.remove(key);
+            }
+            task.run();
+        }, delayMs, TimeUnit.MILLISECONDS);
+        pending.put(key, p);
+    }
+
+    // runs task on the persistence thread after anything already running there and waits for it
+    public void run(Runnable task) {
+        if (Thread.currentThread() == worker) {
+            task.run();
+            return;
+        }
+        try {
+            exec.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // every queued write is done, in order, before this returns
+    public void flush() {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            List<Pending> queued = new ArrayList<>(pending.values());
+            queued.sort((a, b) -> Long.compare(a.future.getDelay(TimeUnit.NANOSECONDS), b.future.getDelay(TimeUnit.NANOSECONDS)));
+            for (Pending p : queued) {
+                if (p.future.cancel(false)) due.add(p.task);
+            }
+            pending.clear();
+        }
+        run(() -> {
+            for (Runnable task : due) task.run();
+        });
+    }
+}
@@ -0,0 +1,384 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.ActionType;
+import com.spawneditor.model.Direction;
+import com.spawneditor.model.DynamicNpcEntry;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.SpawnProject;
+import com.spawneditor.model.Tile;
+import com.spawneditor.util.Ui;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// binary copy of what the editor parses at startup, one section per source file
+public final class SnapshotCache {
+    private static final long MAGIC = 0x5345534E41503031L; // SESNAP01
+    private static final int VERSION = 1;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    static final byte NPC_NAMES = 1;
+    static final byte OBJECT_NAMES = 2;
+    static final byte SPAWNS = 3;
+    static final byte DYNAMIC_NPCS = 4;
+
+    private static final class Section {
+        final FileFingerprint fingerprint;
+        final ByteBuffer payload;
+
+        Section(FileFingerprint fingerprint, ByteBuffer payload) {
+            this.fingerprint = fingerprint;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private final Map<String, Section> sections = new HashMap<>();
+    // loaders may run side by side, each missing on its own
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private SnapshotCache(File file) {
+        this.file = file;
+    }
+
+    public static File defaultFile() {
+        return new File(PathsConfig.configFile().getParentFile(), "spawneditor.snapshot.bin");
+    }
+
+    public static SnapshotCache open() {
+        return open(defaultFile());
+    }
+
+    // a missing, truncated or foreign file just yields an empty cache
+    static SnapshotCache open(File file) {
+        PersistenceExecutor.shared().flush(); // a rebuild may still be queued
+        SnapshotCache cache = new SnapshotCache(file);
+        if (!file.isFile()) return cache;
+        try {
+            // read, not mapped: a mapped file can't be replaced on Windows
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buf.getLong() != MAGIC || buf.getInt() != VERSION) return cache;
+            int count = buf.getInt();
+            Map<String, Section> read = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte kind = buf.get();
+                String source = readString(buf);
+                FileFingerprint fp = new FileFingerprint(buf.getLong(), buf.getLong(), buf.getLong());
+                int length = buf.getInt();
+                ByteBuffer payload = buf.slice();
+                payload.limit(length);
+                buf.position(buf.position() + length);
+                read.put(key(kind, source), new Section(fp, payload));
+            }
+            cache.sections.putAll(read);
+        } catch (IOException | RuntimeException ignored) {
+            cache.sections.clear();
+        }
+        return cache;
+    }
+
+    private static String key(byte kind, String source) {
+        return kind + ":" + new File(source).getAbsolutePath();
+    }
+
+    private ByteBuffer lookup(byte kind, String source) {
+        Section s = sections.get(key(kind, source));
+        if (s == null || !s.fingerprint.matches(new File(source))) {
+            misses.incrementAndGet();
+            return null;
+        }
+        return s.payload.duplicate();
+    }
+
+    private FileFingerprint fingerprintOf(byte kind, String source) {
+        Section s = sections.get(key(kind, source));
+        return s != null ? s.fingerprint : null;
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    FileFingerprint restoreNames(byte kind, String source, NameTable into) {
+        ByteBuffer buf = lookup(kind, source);
+        if (buf == null) return null;
+        int[] ids = readInts(buf);
+        String[] names = readStrings(buf);
+        for (int i = 0; i < ids.length; i++) into.put(ids[i], names[i]);
+        return fingerprintOf(kind, source);
+    }
+
+    FileFingerprint restoreSpawns(String source, List<SpawnEntry> into) {
+        ByteBuffer buf = lookup(SPAWNS, source);
+        if (buf == null) return null;
+        byte[] actions = readBytes(buf);
+        int[] x = readInts(buf), y = readInts(buf), z = readInts(buf);
+        int[] id = readInts(buf), type = readInts(buf), rotation = readInts(buf), walk = readInts(buf);
+        byte[] aggressive = readBytes(buf), direction = readBytes(buf);
+        ActionType[] actionTypes = ActionType.values();
+        Direction[] directions = Direction.values();
+        for (int i = 0; i < actions.length; i++) {
+            SpawnEntry e = new SpawnEntry();
+            e.action = actionTypes[actions[i]];
+            e.tile = new Tile(x[i], y[i], z[i]);
+            e.id = boxed(id[i]);
+            e.type = boxed(type[i]);
+            e.rotation = boxed(rotation[i]);
+            e.walkRadius = boxed(walk[i]);
+            e.aggressive = aggressive[i] < 0 ? null : aggressive[i] != 0;
+            e.direction = direction[i] < 0 ? null : directions[direction[i]];
+            into.add(e);
+        }
+        return fingerprintOf(SPAWNS, source);
+    }
+
+    static final class DynamicLines {
+        final List<String> lines = new ArrayList<>();
+        final List<DynamicNpcEntry> entries = new ArrayList<>();
+        String lineSeparator;
+        boolean synced;
+        FileFingerprint fingerprint;
+    }
+
+    DynamicLines restoreDynamic(String source) {
+        ByteBuffer buf = lookup(DYNAMIC_NPCS, source);
+        if (buf == null) return null;
+        DynamicLines out = new DynamicLines();
+        out.lineSeparator = readString(buf);
+        out.synced = buf.get() != 0;
+        for (String ln : readStrings(buf)) out.lines.add(ln);
+        int[] id = readInts(buf), x = readInts(buf), y = readInts(buf), z = readInts(buf), line = readInts(buf);
+        for (int i = 0; i < id.length; i++) {
+            DynamicNpcEntry e = new DynamicNpcEntry();
+            e.id = id[i];
+            e.x = x[i]; e.y = y[i]; e.z = z[i];
+            e.mapAreaNameHash = -1;
+            e.canBeAttackFromOutOfArea = null;
+            e.lineIndex = line[i];
+            e.rawLine = out.lines.get(line[i]);
+            out.entries.add(e);
+        }
+        out.fingerprint = fingerprintOf(DYNAMIC_NPCS, source);
+        return out;
+    }
+
+    // taken before the first edit; finish() adds the names once they have loaded
+    public PendingSave capture(JsonStore spawns, SpawnProject project, DynamicNpcStore dynamic) {
+        PendingSave save = new PendingSave();
+        try {
+            FileFingerprint fp = spawns.fingerprint();
+            addSection(save.encoded, SPAWNS, spawns.path(), fp, payloadOf(SPAWNS, spawns.path(), fp, () -> encodeSpawns(project.getEntries())));
+            synchronized (dynamic) {
+                FileFingerprint dfp = dynamic.fingerprint();
+                addSection(save.encoded, DYNAMIC_NPCS, dynamic.path(), dfp, payloadOf(DYNAMIC_NPCS, dynamic.path(), dfp, () -> encodeDynamic(dynamic)));
+            }
+        } catch (IOException e) {
+            save.failed = true;
+        }
+        return save;
+    }
+
+    public final class PendingSave {
+        private final List<byte[]> encoded = new ArrayList<>();
+        private boolean failed;
+
+        private PendingSave() {
+        }
+
+        // any thread, once both lists have finished loading
+        public void finish(ObjectIndex objects, NpcIndex npcs) {
+            if (failed || misses.get() == 0) return;
+            try {
+                FileFingerprint nfp = npcs.fingerprint(), ofp = objects.fingerprint();
+                addSection(encoded, NPC_NAMES, npcs.path(), nfp, payloadOf(NPC_NAMES, npcs.path(), nfp, () -> encodeNames(npcs.names())));
+                addSection(encoded, OBJECT_NAMES, objects.path(), ofp, payloadOf(OBJECT_NAMES, objects.path(), ofp, () -> encodeNames(objects.names())));
+            } catch (IOException e) {
+                return;
+            }
+            misses.set(0);
+            PersistenceExecutor.shared().schedule(file, () -> write(encoded));
+        }
+    }
+
+    private interface Encoder {
+        byte[] encode() throws IOException;
+    }
+
+    // a hit keeps the section's own fingerprint object, so its payload is copied back as is
+    private byte[] payloadOf(byte kind, String source, FileFingerprint fp, Encoder encoder) throws IOException {
+        Section s = sections.get(key(kind, source));
+        if (s == null || fp == null || s.fingerprint != fp) return encoder.encode();
+        ByteBuffer payload = s.payload.duplicate();
+        byte[] out = new byte[payload.remaining()];
+        payload.get(out);
+        return out;
+    }
+
+    private void write(List<byte[]> encoded) {
+        try {
+            LineFiles.replaceBytesAtomically(file, out -> {
+                DataOutputStream d = new DataOutputStream(out);
+                d.writeLong(MAGIC);
+                d.writeInt(VERSION);
+                d.writeInt(encoded.size());
+                for (byte[] s : encoded) d.write(s);
+                d.flush();
+            });
+        } catch (IOException ex) {
+            Ui.warn("Failed to write startup cache: " + ex.getMessage());
+        }
+    }
+
+    private static void addSection(List<byte[]> out, byte kind, String source, FileFingerprint fp, byte[] payload) throws IOException {
+        if (fp == null || payload == null) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream d = new DataOutputStream(bytes);
+        d.writeByte(kind);
+        writeString(d, new File(source).getAbsolutePath());
+        d.writeLong(fp.size);
+        d.writeLong(fp.modified);
+        d.writeLong(fp.hash);
+        d.writeInt(payload.length);
+        d.write(payload);
+        d.flush();
+        out.add(bytes.toByteArray());
+    }
+
+    private static byte[] encodeNames(NameTable names) throws IOException {
+        int[] ids = new int[names.size()];
+        String[] values = new String[names.size()];
+        int[] i = {0};
+        names.forEach((name, id) -> {
+            ids[i[0]] = id;
+            values[i[0]++] = name;
+        });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(bytes);
+        writeInts(d, ids);
+        writeStrings(d, values);
+        d.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeSpawns(List<SpawnEntry> entries) throws IOException {
+        int n = entries.size();
+        byte[] actions = new byte[n], aggressive = new byte[n], direction = new byte[n];
+        int[] x = new int[n], y = new int[n], z = new int[n];
+        int[] id = new int[n], type = new int[n], rotation = new int[n], walk = new int[n];
+        for (int i = 0; i < n; i++) {
+            SpawnEntry e = entries.get(i);
+            actions[i] = (byte) e.action.ordinal();
+            x[i] = e.tile.x; y[i] = e.tile.y; z[i] = e.tile.z;
+            id[i] = unboxed(e.id);
+            type[i] = unboxed(e.type);
+            rotation[i] = unboxed(e.rotation);
+            walk[i] = unboxed(e.walkRadius);
+            aggressive[i] = (byte) (e.aggressive == null ? -1 : e.aggressive ? 1 : 0);
+            direction[i] = (byte) (e.direction == null ? -1 : e.direction.ordinal());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(n * 40 + 64);
+        DataOutputStream d = new DataOutputStream(bytes);
+        writeBytes(d, actions);
+        writeInts(d, x); writeInts(d, y); writeInts(d, z);
+        writeInts(d, id); writeInts(d, type); writeInts(d, rotation); writeInts(d, walk);
+        writeBytes(d, aggressive);
+        writeBytes(d, direction);
+        d.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDynamic(DynamicNpcStore store) throws IOException {
+        List<String> lines = store.lines();
+        List<DynamicNpcEntry> entries = store.getEntries();
+        int n = entries.size();
+        int[] id = new int[n], x = new int[n], y = new int[n], z = new int[n], line = new int[n];
+        for (int i = 0; i < n; i++) {
+            DynamicNpcEntry e = entries.get(i);
+            id[i] = e.id;
+            x[i] = e.x; y[i] = e.y; z[i] = e.z;
+            line[i] = e.lineIndex;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(bytes);
+        writeString(d, store.lineSeparator());
+        d.writeByte(store.isSynced() ? 1 : 0);
+        writeStrings(d, lines.toArray(new String[0]));
+        writeInts(d, id); writeInts(d, x); writeInts(d, y); writeInts(d, z); writeInts(d, line);
+        d.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Integer boxed(int v) {
+        return v == NULL_INT ? null : v;
+    }
+
+    private static int unboxed(Integer v) {
+        return v == null ? NULL_INT : v;
+    }
+
+    private static void writeInts(DataOutputStream d, int[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 4);
+        buf.asIntBuffer().put(values);
+        d.writeInt(values.length);
+        d.write(buf.array());
+    }
+
+    private static int[] readInts(ByteBuffer buf) {
+        int n = buf.getInt();
+        int[] out = new int[n];
+        IntBuffer ints = buf.asIntBuffer();
+        ints.get(out);
+        buf.position(buf.position() + n * 4);
+        return out;
+    }
+
+    private static void writeBytes(DataOutputStream d, byte[] values) throws IOException {
+        d.writeInt(values.length);
+        d.write(values);
+    }
+
+    private static byte[] readBytes(ByteBuffer buf) {
+        byte[] out = new byte[buf.getInt()];
+        buf.get(out);
+        return out;
+    }
+
+    private static void writeString(DataOutputStream d, String s) throws IOException {
+        writeBytes(d, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(ByteBuffer buf) {
+        return new String(readBytes(buf), StandardCharsets.UTF_8);
+    }
+
+    // string table: end offsets into one UTF-8 blob
+    private static void writeStrings(DataOutputStream d, String[] values) throws IOException {
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        int[] ends = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) blob.write(values[i].getBytes(StandardCharsets.UTF_8));
+            ends[i] = blob.size();
+        }
+        writeInts(d, ends);
+        writeBytes(d, blob.toByteArray());
+    }
+
+    private static String[] readStrings(ByteBuffer buf) {
+        int[] ends = readInts(buf);
+        byte[] blob = readBytes(buf);
+        String[] out = new String[ends.length];
+        int start = 0;
+        for (int i = 0; i < ends.length; i++) {
+            out[i] = new String(blob, start, ends[i] - start, StandardCharsets.UTF_8);
+            start = ends[i];
+        }
+        return out;
+    }
+}
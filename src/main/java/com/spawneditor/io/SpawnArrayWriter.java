@@ -0,0 +1,57 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.SpawnEntry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// streams a spawns array in the layout SpawnDocument edits in place
+final class SpawnArrayWriter {
+    static final String INDENT = "  ";
+
+    private final Writer w;
+    private final String sep;
+    private List<String> pending;
+
+    SpawnArrayWriter(Writer w, String sep) throws IOException {
+        this.w = w;
+        this.sep = sep;
+        w.write("[");
+        w.write(sep);
+    }
+
+    void entry(SpawnEntry e) throws IOException {
+        element(JsonStore.renderObject(e, INDENT, false));
+    }
+
+    void element(List<String> lines) throws IOException {
+        writePending(true);
+        pending = lines;
+    }
+
+    // an element's text as read, its first line without the indent
+    void copy(List<String> text) throws IOException {
+        List<String> lines = new ArrayList<>(text);
+        lines.set(0, INDENT + lines.get(0));
+        element(lines);
+    }
+
+    void finish() throws IOException {
+        writePending(false);
+        w.write("]");
+        w.write(sep);
+    }
+
+    private void writePending(boolean comma) throws IOException {
+        if (pending == null) return;
+        int last = pending.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            w.write(pending.get(i));
+            if (comma && i == last) w.write(",");
+            w.write(sep);
+        }
+        pending = null;
+    }
+}
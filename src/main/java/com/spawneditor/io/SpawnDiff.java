@@ -0,0 +1,52 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.SpawnEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// keyed by action + tile; of duplicate keys the last entry is compared
+public final class SpawnDiff {
+    public final List<SpawnEntry> added = new ArrayList<>();
+    public final List<SpawnEntry> changed = new ArrayList<>();
+    public final List<SpawnEntry> removed = new ArrayList<>();
+
+    private SpawnDiff() {}
+
+    public static SpawnDiff between(List<SpawnEntry> current, List<SpawnEntry> fresh) {
+        Map<JsonStore.Key, SpawnEntry> before = byKey(current);
+        Map<JsonStore.Key, SpawnEntry> after = byKey(fresh);
+        SpawnDiff d = new SpawnDiff();
+        for (Map.Entry<JsonStore.Key, SpawnEntry> e : before.entrySet()) {
+            if (!after.containsKey(e.getKey())) d.removed.add(e.getValue());
+        }
+        for (Map.Entry<JsonStore.Key, SpawnEntry> e : after.entrySet()) {
+            SpawnEntry old = before.get(e.getKey());
+            if (old == null) d.added.add(e.getValue());
+            else if (!sameFields(old, e.getValue())) d.changed.add(e.getValue());
+        }
+        return d;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    // compared as they would be written, so defaults filled in on save don't count as changes
+    private static boolean sameFields(SpawnEntry a, SpawnEntry b) {
+        return JsonStore.renderObject(a, "", false).equals(JsonStore.renderObject(b, "", false));
+    }
+
+    private static Map<JsonStore.Key, SpawnEntry> byKey(List<SpawnEntry> entries) {
+        Map<JsonStore.Key, SpawnEntry> out = new LinkedHashMap<>();
+        for (SpawnEntry e : entries) {
+            if (e.tile == null) continue;
+            JsonStore.Key k = new JsonStore.Key(e.action, e.tile.x, e.tile.y, e.tile.z);
+            out.remove(k);
+            out.put(k, e);
+        }
+        return out;
+    }
+}
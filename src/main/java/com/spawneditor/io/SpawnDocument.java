@@ -0,0 +1,452 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.SpawnEntry;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class SpawnDocument {
+    private static final String[] EMPTY = new String[0];
+
+    static final class Span {
+        final JsonStore.Key key;
+        final int slot; // object lines live in slot, the text up to the next object in slot + 1
+        String indent;
+        boolean trailingComma;
+        boolean live = true;
+        Span prev, next;
+        Span shadowed; // earlier span with the same key, indexed again once this one is deleted
+
+        Span(JsonStore.Key key, int slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+    }
+
+    static final class Snapshot {
+        private final String[][] pieces;
+        private final String[] footer;
+        private final String lineSeparator;
+
+        private Snapshot(String[][] pieces, String[] footer, String lineSeparator) {
+            this.pieces = pieces;
+            this.footer = footer;
+            this.lineSeparator = lineSeparator;
+        }
+
+        void writeTo(Writer w) throws IOException {
+            for (String[] lines : pieces) {
+                for (String ln : lines) {
+                    w.write(ln);
+                    w.write(lineSeparator);
+                }
+            }
+            for (String ln : footer) {
+                w.write(ln);
+                w.write(lineSeparator);
+            }
+        }
+    }
+
+    // everything an edit can change, so a batch can be rolled back without reparsing
+    static final class Checkpoint {
+        private final int slots;
+        private final String[][] pieces;
+        private final String[] footer;
+        private final Map<JsonStore.Key, Span> index;
+        private final Span[] spans;
+        private final boolean[] trailingCommas;
+        private final int[] slotBytes;
+        private final long footerBytes;
+        private final boolean synced;
+        private final int dirtyFrom, dirtyTo;
+        private final boolean lengthChanged;
+
+        private Checkpoint(SpawnDocument d) {
+            slots = d.pieces.size();
+            pieces = d.pieces.toArray(new String[0][]);
+            footer = d.footer;
+            index = new HashMap<>(d.index);
+            List<Span> live = new ArrayList<>();
+            for (Span s = d.head; s != null; s = s.next) live.add(s);
+            spans = live.toArray(new Span[0]);
+            trailingCommas = new boolean[spans.length];
+            for (int i = 0; i < spans.length; i++) trailingCommas[i] = spans[i].trailingComma;
+            slotBytes = Arrays.copyOf(d.slotBytes, slots);
+            footerBytes = d.footerBytes;
+            synced = d.synced;
+            dirtyFrom = d.dirtyFrom;
+            dirtyTo = d.dirtyTo;
+            lengthChanged = d.lengthChanged;
+        }
+    }
+
+    // slot 0 is the header, then an object slot and a gap slot per span; slots are never reused
+    private final List<String[]> pieces = new ArrayList<>();
+    private final Map<JsonStore.Key, Span> index = new HashMap<>();
+    private String[] footer = EMPTY;
+    private String arrayIndent = "  ";
+    private boolean arrayRoot;
+    private boolean indexed;
+    private Span head, tail;
+    // per-slot byte lengths with a Fenwick tree over them, so a slot's file offset is O(log n)
+    private String lineSeparator = System.lineSeparator();
+    private int[] slotBytes = new int[16];
+    private long[] offsets = new long[17];
+    private long footerBytes;
+    private boolean synced;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = -1;
+    private boolean lengthChanged;
+
+    private SpawnDocument() {}
+
+    static SpawnDocument read(File f, List<SpawnEntry> out) throws IOException {
+        return read(f, out, null);
+    }
+
+    static SpawnDocument read(File f, List<SpawnEntry> out, LoadProgress progress) throws IOException {
+        try (Reader r = new InputStreamReader(LoadProgress.open(f, progress), StandardCharsets.UTF_8)) {
+            return read(r, f.length(), out);
+        }
+    }
+
+    // a new, not yet written "[ ]" file
+    static SpawnDocument emptyArray() {
+        try {
+            return read(new StringReader("[\n]\n"), -1, new ArrayList<>());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static SpawnDocument read(Reader in, long fileLength, List<SpawnEntry> out) throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<SpawnEntry> found = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        SpawnJsonReader reader = new SpawnJsonReader(in, lines);
+        boolean isArray = reader.readArray((e, start, end, trailingComma) -> {
+            if (e == null) return;
+            found.add(e);
+            bounds.add(new int[] {start, end, trailingComma ? 1 : 0});
+        });
+        SpawnDocument doc = new SpawnDocument();
+        doc.arrayRoot = isArray;
+        int arrayStart = reader.arrayStartLine();
+        int arrayEnd = reader.arrayEndLine();
+        if (!isArray || arrayStart < 0 || arrayEnd <= arrayStart) {
+            doc.pieces.add(lines.toArray(EMPTY));
+            if (isArray) out.addAll(found);
+            doc.measure(fileLength);
+            return doc;
+        }
+        out.addAll(found);
+        doc.indexed = true;
+        doc.arrayIndent = leadingWhitespace(lines.get(arrayStart)) + "  ";
+        doc.pieces.add(null);
+        int gapSlot = 0;
+        int cursor = 0;
+        for (int i = 0; i < bounds.size(); i++) {
+            int[] b = bounds.get(i);
+            if (b[0] <= cursor - 1 || b[0] <= arrayStart || b[1] >= arrayEnd) {
+                continue; // shares a line with a bracket or another object, can't be edited line-wise
+            }
+            SpawnEntry e = found.get(i);
+            doc.pieces.set(gapSlot, slice(lines, cursor, b[0]));
+            Span s = new Span(new JsonStore.Key(e.action, e.tile.x, e.tile.y, e.tile.z), doc.pieces.size());
+            s.indent = leadingWhitespace(lines.get(b[0]));
+            s.trailingComma = b[2] != 0;
+            doc.pieces.add(slice(lines, b[0], b[1] + 1));
+            doc.pieces.add(null);
+            doc.link(s);
+            s.shadowed = doc.index.put(s.key, s);
+            gapSlot = s.slot + 1;
+            cursor = b[1] + 1;
+        }
+        doc.pieces.set(gapSlot, slice(lines, cursor, arrayEnd));
+        doc.footer = slice(lines, arrayEnd, lines.size());
+        doc.measure(fileLength);
+        return doc;
+    }
+
+    String lineSeparator() {
+        return lineSeparator;
+    }
+
+    boolean isArrayRoot() {
+        return arrayRoot;
+    }
+
+    boolean isIndexed() {
+        return indexed;
+    }
+
+    boolean isSynced() {
+        return synced;
+    }
+
+    private void measure(long fileLength) {
+        long text = 0, count = footer.length;
+        for (String[] lines : pieces) {
+            count += lines.length;
+            for (String ln : lines) text += LineFiles.utf8Length(ln);
+        }
+        for (String ln : footer) text += LineFiles.utf8Length(ln);
+        String sep = LineFiles.separatorMatching(text, count, fileLength);
+        synced = sep != null;
+        if (sep != null) lineSeparator = sep;
+        ensureCapacity(pieces.size());
+        for (int slot = 0; slot < pieces.size(); slot++) setBytes(slot, bytesOf(pieces.get(slot)));
+        footerBytes = bytesOf(footer);
+    }
+
+    Span find(JsonStore.Key key) {
+        return index.get(key);
+    }
+
+    String appendIndent() {
+        return head != null ? head.indent : arrayIndent;
+    }
+
+    void replace(Span s, List<String> lines) {
+        setPiece(s.slot, lines.toArray(EMPTY));
+    }
+
+    Span append(JsonStore.Key key, String indent, List<String> lines) {
+        if (tail != null && !tail.trailingComma) {
+            String[] obj = pieces.get(tail.slot).clone();
+            String last = obj[obj.length - 1];
+            if (last.trim().endsWith("}")) {
+                obj[obj.length - 1] = last + ",";
+                setPiece(tail.slot, obj);
+                tail.trailingComma = true;
+            }
+        }
+        Span s = new Span(key, pieces.size());
+        s.indent = indent;
+        s.trailingComma = false;
+        addPiece(lines.toArray(EMPTY));
+        addPiece(EMPTY);
+        link(s);
+        s.shadowed = index.put(key, s);
+        return s;
+    }
+
+    void delete(Span s) {
+        String[] obj = pieces.get(s.slot);
+        boolean commaOnEndLine = obj.length > 0 && obj[obj.length - 1].trim().endsWith(",");
+        setPiece(s.slot, EMPTY);
+        if (s.trailingComma && !commaOnEndLine) removeLeadingComma(s.slot + 1);
+        unlink(s);
+        if (index.get(s.key) == s) {
+            if (s.shadowed != null) index.put(s.key, s.shadowed);
+            else index.remove(s.key);
+        }
+    }
+
+    private void removeLeadingComma(int fromSlot) {
+        for (int slot = fromSlot; slot < pieces.size(); slot++) {
+            String[] lines = pieces.get(slot);
+            for (int i = 0; i < lines.length; i++) {
+                String t = lines[i].trim();
+                if (t.isEmpty()) continue;
+                if (t.startsWith(",")) {
+                    String[] copy;
+                    if (t.equals(",")) {
+                        copy = new String[lines.length - 1];
+                        System.arraycopy(lines, 0, copy, 0, i);
+                        System.arraycopy(lines, i + 1, copy, i, lines.length - i - 1);
+                    } else {
+                        copy = lines.clone();
+                        int pos = copy[i].indexOf(',');
+                        copy[i] = copy[i].substring(0, pos) + copy[i].substring(pos + 1);
+                    }
+                    setPiece(slot, copy);
+                }
+                return;
+            }
+        }
+    }
+
+    void writeTo(Writer w, String lineSeparator) throws IOException {
+        for (String[] lines : pieces) {
+            for (String ln : lines) {
+                w.write(ln);
+                w.write(lineSeparator);
+            }
+        }
+        for (String ln : footer) {
+            w.write(ln);
+            w.write(lineSeparator);
+        }
+    }
+
+    // pieces are never mutated in place, so copying the slot references is enough
+    Snapshot snapshot() {
+        return new Snapshot(pieces.toArray(new String[0][]), footer, lineSeparator);
+    }
+
+    Checkpoint checkpoint() {
+        return new Checkpoint(this);
+    }
+
+    void restore(Checkpoint c) {
+        for (Span s = head; s != null; s = s.next) s.live = false;
+        pieces.clear();
+        pieces.addAll(Arrays.asList(c.pieces));
+        footer = c.footer;
+        index.clear();
+        index.putAll(c.index);
+        head = tail = null;
+        for (int i = 0; i < c.spans.length; i++) {
+            Span s = c.spans[i];
+            s.prev = s.next = null;
+            s.live = true;
+            s.trailingComma = c.trailingCommas[i];
+            link(s);
+        }
+        slotBytes = new int[Math.max(16, Integer.highestOneBit(Math.max(1, c.slots)) << 1)];
+        offsets = new long[slotBytes.length + 1];
+        for (int slot = 0; slot < c.slots; slot++) setBytes(slot, c.slotBytes[slot]);
+        footerBytes = c.footerBytes;
+        synced = c.synced;
+        dirtyFrom = c.dirtyFrom;
+        dirtyTo = c.dirtyTo;
+        lengthChanged = c.lengthChanged;
+    }
+
+    long length() {
+        return offsetOf(pieces.size()) + footerBytes;
+    }
+
+    // patches the slots touched since the last write; only when canWriteInPlace()
+    long writeChanges(FileChannel ch) throws IOException {
+        if (dirtyTo < 0) return 0;
+        long written = writeSlots(ch, dirtyFrom, dirtyTo);
+        clearDirty();
+        return written;
+    }
+
+    boolean hasChanges() {
+        return !synced || dirtyTo >= 0;
+    }
+
+    // same-length edits can be patched into the file; anything that moves bytes is written whole
+    boolean canWriteInPlace() {
+        return synced && !lengthChanged;
+    }
+
+    // the caller replaces the file with this snapshot, so later edits are tracked against it
+    Snapshot snapshotForWrite() {
+        Snapshot s = snapshot();
+        clearDirty();
+        synced = true;
+        return s;
+    }
+
+    void markUnsynced() {
+        synced = false;
+    }
+
+    private long writeSlots(FileChannel ch, int from, int to) throws IOException {
+        long start = offsetOf(from);
+        Writer w = LineFiles.writerAt(ch, start);
+        for (int slot = from; slot < to; slot++) {
+            for (String ln : slot == pieces.size() ? footer : pieces.get(slot)) {
+                w.write(ln);
+                w.write(lineSeparator);
+            }
+        }
+        w.flush();
+        return (to > pieces.size() ? length() : offsetOf(to)) - start;
+    }
+
+    private void clearDirty() {
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = -1;
+        lengthChanged = false;
+    }
+
+    private void setPiece(int slot, String[] lines) {
+        pieces.set(slot, lines);
+        int bytes = bytesOf(lines);
+        if (bytes != slotBytes[slot]) lengthChanged = true;
+        setBytes(slot, bytes);
+        touch(slot);
+    }
+
+    private void addPiece(String[] lines) {
+        int slot = pieces.size();
+        pieces.add(lines);
+        ensureCapacity(slot + 1);
+        setBytes(slot, bytesOf(lines));
+        lengthChanged = true;
+        touch(slot);
+    }
+
+    private void touch(int slot) {
+        dirtyFrom = Math.min(dirtyFrom, slot);
+        dirtyTo = Math.max(dirtyTo, slot + 1);
+    }
+
+    private int bytesOf(String[] lines) {
+        int n = 0;
+        for (String ln : lines) n += LineFiles.utf8Length(ln) + lineSeparator.length();
+        return n;
+    }
+
+    private void setBytes(int slot, int bytes) {
+        long delta = bytes - slotBytes[slot];
+        slotBytes[slot] = bytes;
+        for (int i = slot + 1; i < offsets.length; i += i & -i) offsets[i] += delta;
+    }
+
+    private long offsetOf(int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) sum += offsets[i];
+        return sum;
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots <= slotBytes.length) return;
+        int cap = slotBytes.length;
+        while (cap < slots) cap <<= 1;
+        slotBytes = Arrays.copyOf(slotBytes, cap);
+        offsets = new long[cap + 1];
+        for (int i = 1; i <= cap; i++) {
+            offsets[i] += slotBytes[i - 1];
+            int j = i + (i & -i);
+            if (j <= cap) offsets[j] += offsets[i];
+        }
+    }
+
+    private void link(Span s) {
+        s.prev = tail;
+        if (tail != null) tail.next = s; else head = s;
+        tail = s;
+    }
+
+    private void unlink(Span s) {
+        if (!s.live) return;
+        s.live = false;
+        if (s.prev != null) s.prev.next = s.next; else head = s.next;
+        if (s.next != null) s.next.prev = s.prev; else tail = s.prev;
+        s.prev = s.next = null;
+    }
+
+    private static String[] slice(List<String> lines, int from, int to) {
+        if (to <= from) return EMPTY;
+        return lines.subList(from, to).toArray(EMPTY);
+    }
+
+    private static String leadingWhitespace(String s) {
+        int i = 0; while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return s.substring(0, i);
+    }
+}
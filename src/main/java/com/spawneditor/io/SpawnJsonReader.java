@@ -0,0 +1,395 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.ActionType;
+import com.spawneditor.model.Direction;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.Tile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+final class SpawnJsonReader {
+    interface Handler {
+        void entry(SpawnEntry entry, int startLine, int endLine, boolean trailingComma);
+    }
+
+    interface ElementHandler {
+        // entry is null for elements that are not spawn entries; text is the element as written
+        void element(SpawnEntry entry, List<String> text) throws IOException;
+    }
+
+    private final Reader in;
+    private final List<String> lines; // null when only the entries are wanted
+    private final char[] buf = new char[8192];
+    private int bufLen = 0;
+    private int bufPos = 0;
+    private boolean eof = false;
+    private final StringBuilder lineBuf = new StringBuilder(128);
+    private String cur = null;
+    private int pos = 0;
+    private int lineNo = -1;
+    private int arrayStartLine = -1;
+    private int arrayEndLine = -1;
+
+    SpawnJsonReader(Reader in, List<String> lines) {
+        this.in = in;
+        this.lines = lines;
+    }
+
+    int arrayStartLine() {
+        return arrayStartLine;
+    }
+
+    int arrayEndLine() {
+        return arrayEndLine;
+    }
+
+    boolean readArray(Handler handler) throws IOException {
+        int c = peek();
+        if (c != '[') return false;
+        arrayStartLine = lineNo;
+        pos++;
+        if (peek() == ']') {
+            arrayEndLine = lineNo;
+            pos++;
+            drain();
+            return true;
+        }
+        while (true) {
+            c = peek();
+            if (c == -1) throw error("Unterminated array");
+            if (c == ']') {
+                arrayEndLine = lineNo;
+                pos++;
+                break;
+            }
+            if (c == ',') {
+                pos++;
+                continue;
+            }
+            if (c == '{') {
+                int start = lineNo;
+                pos++;
+                SpawnEntry e = readEntryBody();
+                int end = lineNo;
+                boolean trailingComma = peek() == ',';
+                handler.entry(e, start, end, trailingComma);
+            } else {
+                skipValue();
+            }
+        }
+        drain();
+        return true;
+    }
+
+    // every element of the root array with its own text, for copying files element by element;
+    // only the lines of the current element are kept
+    boolean readElements(ElementHandler handler) throws IOException {
+        if (peek() != '[') return false;
+        pos++;
+        while (true) {
+            int c = peek();
+            if (c == -1) throw error("Unterminated array");
+            if (c == ']') {
+                pos++;
+                break;
+            }
+            if (c == ',') {
+                pos++;
+                continue;
+            }
+            lines.subList(0, lines.size() - 1).clear();
+            int startPos = pos;
+            SpawnEntry e = null;
+            if (c == '{') {
+                pos++;
+                e = readEntryBody();
+            } else {
+                skipValue();
+            }
+            handler.element(e, text(startPos));
+        }
+        drain();
+        return true;
+    }
+
+    private List<String> text(int startPos) {
+        int last = lines.size() - 1;
+        if (last == 0) return List.of(cur.substring(startPos, pos));
+        List<String> out = new ArrayList<>(last + 1);
+        out.add(lines.get(0).substring(startPos));
+        for (int i = 1; i < last; i++) out.add(lines.get(i));
+        out.add(cur.substring(0, pos));
+        return out;
+    }
+
+    SpawnEntry readObject() throws IOException {
+        if (peek() != '{') throw error("Expected '{'");
+        pos++;
+        return readEntryBody();
+    }
+
+    private SpawnEntry readEntryBody() throws IOException {
+        String action = null;
+        boolean hasTile = false;
+        String x = null, y = null, z = null;
+        String id = null, type = null, rotation = null, walk = null, aggressive = null, direction = null;
+        while (true) {
+            int c = peek();
+            if (c == -1) throw error("Unterminated object");
+            if (c == '}') { pos++; break; }
+            if (c == ',') { pos++; continue; }
+            String name = readName();
+            expect(':');
+            switch (name) {
+                case "action" -> action = readScalar();
+                case "tile" -> {
+                    if (peek() == '{') {
+                        pos++;
+                        hasTile = true;
+                        while (true) {
+                            int t = peek();
+                            if (t == -1) throw error("Unterminated object");
+                            if (t == '}') { pos++; break; }
+                            if (t == ',') { pos++; continue; }
+                            String tn = readName();
+                            expect(':');
+                            switch (tn) {
+                                case "x" -> x = readScalar();
+                                case "y" -> y = readScalar();
+                                case "z" -> z = readScalar();
+                                default -> skipValue();
+                            }
+                        }
+                    } else {
+                        skipValue();
+                        hasTile = false;
+                    }
+                }
+                case "id" -> id = readScalar();
+                case "type" -> type = readScalar();
+                case "rotation" -> rotation = readScalar();
+                case "walk_radius" -> walk = readScalar();
+                case "aggressive" -> aggressive = readScalar();
+                case "direction" -> direction = readScalar();
+                default -> skipValue();
+            }
+        }
+        if (action == null || !hasTile) return null;
+        ActionType a = ActionType.fromWire(action);
+        if (a == null) return null;
+        Integer tx = toInt(x, null), ty = toInt(y, null), tz = toInt(z, null);
+        if (tx == null || ty == null || tz == null) return null;
+        SpawnEntry entry = new SpawnEntry();
+        entry.action = a;
+        entry.tile = new Tile(tx, ty, tz);
+        switch (a) {
+            case SPAWN_OBJECT:
+            case SPAWN_OVER_OBJECT:
+                entry.id = toInt(id, null);
+                entry.type = toInt(type, 10);
+                entry.rotation = toInt(rotation, 0) % 4;
+                break;
+            case SPAWN_NPC:
+                entry.id = toInt(id, null);
+                entry.walkRadius = toInt(walk, 0);
+                entry.aggressive = aggressive != null && Boolean.parseBoolean(aggressive);
+                entry.direction = Direction.safeValueOf(direction != null ? direction : "NORTH");
+                break;
+            case DELETE_OBJECT:
+                break;
+        }
+        return entry;
+    }
+
+    private static Integer toInt(String s, Integer def) {
+        if (s == null) return def;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Double.parseDouble(s);
+            } catch (NumberFormatException e2) {
+                return def;
+            }
+        }
+    }
+
+    private String readName() throws IOException {
+        int c = peek();
+        if (c == '"' || c == '\'') return readQuoted((char) c);
+        return readLiteral();
+    }
+
+    private String readScalar() throws IOException {
+        int c = peek();
+        if (c == '"' || c == '\'') return readQuoted((char) c);
+        if (c == '{' || c == '[') {
+            skipValue();
+            return null;
+        }
+        String lit = readLiteral();
+        return "null".equals(lit) ? null : lit;
+    }
+
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"' || c == '\'') {
+            readQuoted((char) c);
+            return;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = peek();
+                if (c == '"' || c == '\'') {
+                    readQuoted((char) c);
+                    continue;
+                }
+                if (c == -1) throw error("Unterminated value");
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                pos++;
+            } while (depth > 0);
+            return;
+        }
+        readLiteral();
+    }
+
+    private String readQuoted(char quote) throws IOException {
+        pos++;
+        StringBuilder sb = null;
+        int from = pos;
+        while (true) {
+            if (pos >= cur.length()) throw error("Unterminated string");
+            char ch = cur.charAt(pos);
+            if (ch == quote) {
+                String s = sb == null ? cur.substring(from, pos) : sb.append(cur, from, pos).toString();
+                pos++;
+                return s;
+            }
+            if (ch == '\\') {
+                if (sb == null) sb = new StringBuilder();
+                sb.append(cur, from, pos);
+                if (pos + 1 >= cur.length()) throw error("Unterminated escape");
+                char esc = cur.charAt(pos + 1);
+                pos += 2;
+                switch (esc) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > cur.length()) throw error("Bad unicode escape");
+                        try {
+                            sb.append((char) Integer.parseInt(cur.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> sb.append(esc);
+                }
+                from = pos;
+                continue;
+            }
+            pos++;
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        peek();
+        int from = pos;
+        while (pos < cur.length()) {
+            char ch = cur.charAt(pos);
+            if (ch == ',' || ch == ':' || ch == '}' || ch == ']' || ch == '{' || ch == '['
+                    || ch == '"' || ch == '/' || ch == '#' || Character.isWhitespace(ch)) break;
+            pos++;
+        }
+        if (pos == from) throw error("Unexpected character");
+        return cur.substring(from, pos);
+    }
+
+    private void expect(char c) throws IOException {
+        int p = peek();
+        if (p == c || (c == ':' && p == '=')) {
+            pos++;
+            return;
+        }
+        throw error("Expected '" + c + "'");
+    }
+
+    private IOException error(String msg) {
+        return new IOException(msg + " at line " + (lineNo + 1) + " column " + (pos + 1));
+    }
+
+    private int peek() throws IOException {
+        while (true) {
+            if (cur == null || pos >= cur.length()) {
+                if (!nextLine()) return -1;
+                continue;
+            }
+            char ch = cur.charAt(pos);
+            if (Character.isWhitespace(ch)) {
+                pos++;
+                continue;
+            }
+            if (ch == '#' || (ch == '/' && pos + 1 < cur.length() && cur.charAt(pos + 1) == '/')) {
+                pos = cur.length();
+                continue;
+            }
+            if (ch == '/' && pos + 1 < cur.length() && cur.charAt(pos + 1) == '*') {
+                pos += 2;
+                while (true) {
+                    int close = cur.indexOf("*/", pos);
+                    if (close >= 0) {
+                        pos = close + 2;
+                        break;
+                    }
+                    if (!nextLine()) throw error("Unterminated comment");
+                }
+                continue;
+            }
+            return ch;
+        }
+    }
+
+    private void drain() throws IOException {
+        while (nextLine()) {
+            // keep trailing lines so in-place edits write them back untouched
+        }
+    }
+
+    private boolean nextLine() throws IOException {
+        if (eof) return false;
+        lineBuf.setLength(0);
+        while (true) {
+            if (bufPos >= bufLen) {
+                bufLen = in.read(buf, 0, buf.length);
+                bufPos = 0;
+                if (bufLen <= 0) {
+                    eof = true;
+                    if (lineBuf.length() == 0) return false;
+                    break;
+                }
+            }
+            int start = bufPos;
+            while (bufPos < bufLen && buf[bufPos] != '\n') bufPos++;
+            lineBuf.append(buf, start, bufPos - start);
+            if (bufPos < bufLen) {
+                bufPos++;
+                break;
+            }
+        }
+        int n = lineBuf.length();
+        if (n > 0 && lineBuf.charAt(n - 1) == '\r') lineBuf.setLength(n - 1);
+        cur = lineBuf.toString();
+        if (lines != null) lines.add(cur);
+        lineNo++;
+        pos = 0;
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.spawneditor.io;
+
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.TileKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// spawns as one JSON array per 64x64 region, r<rx>_<ry>.json, read back in region order;
+// split and join copy each element's text as written, only the order changes
+public final class SpawnShards {
+    private static final Pattern NAME = Pattern.compile("r(-?\\d+)_(-?\\d+)\\.json");
+
+    private SpawnShards() {}
+
+    static long regionOf(int x, int y) {
+        return TileKey.region(x, y);
+    }
+
+    static File fileFor(File dir, long region) {
+        return new File(dir, "r" + (int) (region >> 32) + "_" + (int) region + ".json");
+    }
+
+    static Map<Long, File> list(File dir) {
+        Map<Long, File> out = new TreeMap<>();
+        File[] files = dir.listFiles();
+        if (files == null) return out;
+        for (File f : files) {
+            Matcher m = NAME.matcher(f.getName());
+            if (!f.isFile() || !m.matches()) continue;
+            try {
+                out.put(TileKey.column(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))), f);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return out;
+    }
+
+    // single file -> region files; region files no longer backed by an entry are removed.
+    // Elements that are not entries go with the entry before them (the first entry if none is)
+    public static int split(File single, File dir) throws IOException {
+        Map<Long, List<List<String>>> byRegion = new LinkedHashMap<>();
+        List<List<String>> leading = new ArrayList<>();
+        long[] last = {0};
+        readElements(single, (e, text) -> {
+            if (e == null && byRegion.isEmpty()) {
+                leading.add(text);
+                return;
+            }
+            if (e != null) last[0] = regionOf(e.tile.x, e.tile.y);
+            byRegion.computeIfAbsent(last[0], r -> {
+                List<List<String>> shard = new ArrayList<>(leading);
+                leading.clear();
+                return shard;
+            }).add(text);
+        });
+        if (!leading.isEmpty()) byRegion.put(regionOf(0, 0), leading);
+        Files.createDirectories(dir.toPath());
+        for (Map.Entry<Long, List<List<String>>> region : byRegion.entrySet()) {
+            List<List<String>> elements = region.getValue();
+            LineFiles.replaceAtomically(fileFor(dir, region.getKey()), w -> {
+                SpawnArrayWriter out = new SpawnArrayWriter(w, System.lineSeparator());
+                for (List<String> text : elements) out.copy(text);
+                out.finish();
+            });
+        }
+        for (Map.Entry<Long, File> existing : list(dir).entrySet()) {
+            if (!byRegion.containsKey(existing.getKey())) Files.delete(existing.getValue().toPath());
+        }
+        return byRegion.size();
+    }
+
+    // region files -> single file, in region order
+    public static int join(File dir, File single) throws IOException {
+        int[] count = {0};
+        LineFiles.replaceAtomically(single, w -> {
+            SpawnArrayWriter out = new SpawnArrayWriter(w, System.lineSeparator());
+            for (File f : list(dir).values()) {
+                readElements(f, (e, text) -> {
+                    out.copy(text);
+                    count[0]++;
+                });
+            }
+            out.finish();
+        });
+        return count[0];
+    }
+
+    private static void readElements(File f, SpawnJsonReader.ElementHandler handler) throws IOException {
+        try (Reader r = new InputStreamReader(Files.newInputStream(f.toPath()), StandardCharsets.UTF_8)) {
+            if (!new SpawnJsonReader(r, new ArrayList<>()).readElements(handler)) {
+                throw new IOException("Invalid JSON root (expected array): " + f);
+            }
+        }
+    }
+
+    static void writeAll(List<SpawnEntry> entries, File dir) throws IOException {
+        Files.createDirectories(dir.toPath());
+        Map<Long, List<SpawnEntry>> byRegion = new LinkedHashMap<>();
+        for (SpawnEntry e : entries) {
+            byRegion.computeIfAbsent(regionOf(e.tile.x, e.tile.y), r -> new ArrayList<>()).add(e);
+        }
+        for (Map.Entry<Long, List<SpawnEntry>> region : byRegion.entrySet()) {
+            writeArray(fileFor(dir, region.getKey()), region.getValue());
+        }
+        for (Map.Entry<Long, File> existing : list(dir).entrySet()) {
+            if (!byRegion.containsKey(existing.getKey())) Files.delete(existing.getValue().toPath());
+        }
+    }
+
+    private static void writeArray(File f, List<SpawnEntry> entries) throws IOException {
+        String sep = System.lineSeparator();
+        LineFiles.replaceAtomically(f, w -> {
+            SpawnArrayWriter out = new SpawnArrayWriter(w, sep);
+            for (SpawnEntry e : entries) out.entry(e);
+            out.finish();
+        });
+    }
+}
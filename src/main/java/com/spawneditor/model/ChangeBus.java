@@ -0,0 +1,98 @@
+package com.spawneditor.model;
+
+import java.awt.EventQueue;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// a model's change events, folded and delivered on the EDT once per event queue turn
+public final class ChangeBus<T> {
+    public static final class Changes<T> {
+        public final Set<T> added = new LinkedHashSet<>();
+        public final Set<T> updated = new LinkedHashSet<>();
+        public final Set<T> removed = new LinkedHashSet<>();
+        public boolean reset;
+
+        public boolean isEmpty() {
+            return !reset && added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private final List<Consumer<Changes<T>>> listeners = new CopyOnWriteArrayList<>();
+    private Changes<T> pending = new Changes<>();
+    private boolean scheduled;
+    private int holds;
+
+    public void addListener(Consumer<Changes<T>> l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(Consumer<Changes<T>> l) {
+        listeners.remove(l);
+    }
+
+    public synchronized void added(T value) {
+        if (pending.reset) return;
+        if (pending.removed.remove(value)) pending.updated.add(value);
+        else pending.added.add(value);
+        schedule();
+    }
+
+    public synchronized void updated(T value) {
+        if (pending.reset || pending.added.contains(value)) return;
+        pending.updated.add(value);
+        schedule();
+    }
+
+    public synchronized void removed(T value) {
+        if (pending.reset) return;
+        if (!pending.added.remove(value)) {
+            pending.updated.remove(value);
+            pending.removed.add(value);
+        }
+        schedule();
+    }
+
+    public synchronized void reset() {
+        pending.added.clear();
+        pending.updated.clear();
+        pending.removed.clear();
+        pending.reset = true;
+        schedule();
+    }
+
+    // for multi-step operations: nothing is delivered until every hold is released
+    public synchronized void hold() {
+        holds++;
+    }
+
+    public synchronized void release() {
+        if (holds == 0) throw new IllegalStateException("Not held");
+        holds--;
+        schedule();
+    }
+
+    // delivers what is pending now; a no-op off the EDT
+    public void flush() {
+        if (EventQueue.isDispatchThread()) deliver();
+    }
+
+    private void schedule() {
+        if (scheduled || holds > 0 || pending.isEmpty()) return;
+        scheduled = true;
+        EventQueue.invokeLater(this::deliver);
+    }
+
+    private void deliver() {
+        Changes<T> c;
+        synchronized (this) {
+            scheduled = false;
+            if (holds > 0 || pending.isEmpty()) return;
+            c = pending;
+            pending = new Changes<>();
+        }
+        for (Consumer<Changes<T>> l : listeners) l.accept(c);
+    }
+}
@@ -0,0 +1,164 @@
+package com.spawneditor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// open-addressing multimap from long keys, values in insertion order
+final class LongBuckets<T> {
+    @SuppressWarnings("serial") // never serialized
+    private static final class Chain extends ArrayList<Object> {
+        Chain(Object a, Object b) {
+            super(4);
+            add(a);
+            add(b);
+        }
+    }
+
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];
+    private int size;
+
+    int count(long key) {
+        Object v = values[slot(key)];
+        if (v == null) return 0;
+        return v instanceof Chain ? ((Chain) v).size() : 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(long key, int n) {
+        Object v = values[slot(key)];
+        return (T) (v instanceof Chain ? ((Chain) v).get(n) : v);
+    }
+
+    void add(long key, T value) {
+        int i = slot(key);
+        Object v = values[i];
+        if (v == null) {
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) resize(keys.length * 2);
+        } else if (v instanceof Chain) {
+            ((Chain) v).add(value);
+        } else {
+            values[i] = new Chain(v, value);
+        }
+    }
+
+    // value goes in as the key's n-th value
+    void add(long key, int n, T value) {
+        int i = slot(key);
+        Object v = values[i];
+        if (v instanceof Chain) ((Chain) v).add(n, value);
+        else if (v != null) values[i] = n == 0 ? new Chain(value, v) : new Chain(v, value);
+        else add(key, value);
+    }
+
+    // by identity; now keeps old's place
+    boolean replace(long key, T old, T now) {
+        int i = slot(key);
+        Object v = values[i];
+        if (v instanceof Chain) {
+            Chain c = (Chain) v;
+            for (int j = 0; j < c.size(); j++) {
+                if (c.get(j) == old) {
+                    c.set(j, now);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (v == null || v != old) return false;
+        values[i] = now;
+        return true;
+    }
+
+    // by identity
+    boolean remove(long key, T value) {
+        int i = slot(key);
+        Object v = values[i];
+        if (v == null) return false;
+        if (v instanceof Chain) {
+            Chain c = (Chain) v;
+            for (int j = 0; j < c.size(); j++) {
+                if (c.get(j) == value) {
+                    c.remove(j);
+                    if (c.size() == 1) values[i] = c.get(0);
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (v != value) return false;
+        delete(i);
+        return true;
+    }
+
+    int keyCount() {
+        return size;
+    }
+
+    // the callback must not add or remove keys
+    void forEachKey(LongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) action.accept(keys[i]);
+        }
+    }
+
+    void clear() {
+        if (keys.length > 16) {
+            keys = new long[16];
+            values = new Object[16];
+        } else {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    void ensureCapacity(int n) {
+        int cap = keys.length;
+        while (n * 2 > cap) cap *= 2;
+        if (cap != keys.length) resize(cap);
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    // backward-shift deletion: later entries of the same probe run move up into the hole
+    private void delete(int hole) {
+        int mask = keys.length - 1;
+        values[hole] = null;
+        size--;
+        for (int j = (hole + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                values[j] = null;
+                hole = j;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
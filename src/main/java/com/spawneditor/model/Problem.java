@@ -0,0 +1,33 @@
+package com.spawneditor.model;
+
+// one finding of the validator, tied to the tile it was found on
+public final class Problem {
+    public enum Kind {
+        BAD_PLANE("plane"),
+        DUPLICATE_KEY("duplicate"),
+        SPAWN_ON_DELETE("deleted tile"),
+        UNKNOWN_NPC("unknown npc"),
+        UNKNOWN_OBJECT("unknown object");
+
+        public final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    public final Kind kind;
+    public final Tile tile;
+    public final String message;
+
+    public Problem(Kind kind, Tile tile, String message) {
+        this.kind = kind;
+        this.tile = tile;
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + kind.label + "] " + message + "  @ " + tile.x + "," + tile.y + "," + tile.z;
+    }
+}
@@ -0,0 +1,120 @@
+package com.spawneditor.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+// values bucketed by 64x64 region and plane; remove a value before its tile changes
+public final class RegionIndex<T> {
+    private final LongBuckets<T> buckets = new LongBuckets<>();
+    private final ToLongFunction<? super T> tileOf;
+    // planes other than 0-3 in use, with their value counts
+    private final Map<Integer, Integer> offPlanes = new HashMap<>();
+    private int size;
+
+    public RegionIndex(ToLongFunction<? super T> tileOf) {
+        this.tileOf = tileOf;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(T value) {
+        long tile = tileOf.applyAsLong(value);
+        buckets.add(bucketOf(tile), value);
+        countPlane(TileKey.z(tile), 1);
+        size++;
+    }
+
+    public boolean remove(T value) {
+        long tile = tileOf.applyAsLong(value);
+        if (!buckets.remove(bucketOf(tile), value)) return false;
+        countPlane(TileKey.z(tile), -1);
+        size--;
+        return true;
+    }
+
+    // now takes old's place; both must be on the same tile
+    public boolean replace(T old, T now) {
+        return buckets.replace(bucketOf(tileOf.applyAsLong(old)), old, now);
+    }
+
+    public void clear() {
+        buckets.clear();
+        offPlanes.clear();
+        size = 0;
+    }
+
+    public void ensureCapacity(int n) {
+        buckets.ensureCapacity(n);
+    }
+
+    // inclusive bounds, in either order; values sharing a tile keep the order they were added in
+    public List<T> query(int x0, int y0, int x1, int y1, int plane) {
+        List<T> out = new ArrayList<>();
+        forEachIn(x0, y0, x1, y1, plane, out::add);
+        return out;
+    }
+
+    // every plane from lo to hi, inclusive, one after another in ascending order
+    public List<T> query(int x0, int y0, int x1, int y1, int lo, int hi) {
+        List<T> out = new ArrayList<>();
+        List<Integer> planes = new ArrayList<>();
+        for (int z = Math.max(lo, 0); z <= Math.min(hi, 3); z++) planes.add(z);
+        for (int z : offPlanes.keySet()) {
+            if (z >= lo && z <= hi) planes.add(z);
+        }
+        planes.sort(null);
+        for (int z : planes) forEachIn(x0, y0, x1, y1, z, out::add);
+        return out;
+    }
+
+    public void forEachIn(int x0, int y0, int x1, int y1, int plane, Consumer<? super T> action) {
+        int minX = Math.min(x0, x1), maxX = Math.max(x0, x1);
+        int minY = Math.min(y0, y1), maxY = Math.max(y0, y1);
+        int rx0 = TileKey.regionX(minX), rx1 = TileKey.regionX(maxX);
+        int ry0 = TileKey.regionY(minY), ry1 = TileKey.regionY(maxY);
+        // a rectangle spanning more regions than there are buckets walks the buckets instead
+        if ((long) (rx1 - rx0 + 1) * (ry1 - ry0 + 1) > buckets.keyCount()) {
+            int z = TileKey.z(TileKey.of(0, 0, plane));
+            buckets.forEachKey(bucket -> {
+                int rx = TileKey.x(bucket), ry = TileKey.y(bucket);
+                if (TileKey.z(bucket) == z && rx >= rx0 && rx <= rx1 && ry >= ry0 && ry <= ry1) {
+                    visit(bucket, rx > rx0 && rx < rx1 && ry > ry0 && ry < ry1, minX, minY, maxX, maxY, action);
+                }
+            });
+            return;
+        }
+        for (int rx = rx0; rx <= rx1; rx++) {
+            for (int ry = ry0; ry <= ry1; ry++) {
+                visit(TileKey.of(rx, ry, plane), rx > rx0 && rx < rx1 && ry > ry0 && ry < ry1, minX, minY, maxX, maxY, action);
+            }
+        }
+    }
+
+    // inside: the region lies wholly within the rectangle, so its values need no bounds check
+    private void visit(long bucket, boolean inside, int minX, int minY, int maxX, int maxY, Consumer<? super T> action) {
+        for (int i = 0, n = buckets.count(bucket); i < n; i++) {
+            T v = buckets.get(bucket, i);
+            if (!inside) {
+                long k = tileOf.applyAsLong(v);
+                int x = TileKey.x(k), y = TileKey.y(k);
+                if (x < minX || x > maxX || y < minY || y > maxY) continue;
+            }
+            action.accept(v);
+        }
+    }
+
+    private void countPlane(int z, int delta) {
+        if (z >= 0 && z <= 3) return;
+        offPlanes.merge(z, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static long bucketOf(long tile) {
+        return TileKey.of(TileKey.regionX(TileKey.x(tile)), TileKey.regionY(TileKey.y(tile)), TileKey.z(tile));
+    }
+}
@@ -0,0 +1,339 @@
+package com.spawneditor.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+// spawn entries as parallel primitive arrays, about 18 bytes a row with the region index instead
+// of a SpawnEntry with its Tile, boxed fields and index slots, for dumps too large to hold as
+// objects. Rows are added while loading; finish() indexes them and the store is read-only after.
+// A row whose values don't fit the narrow columns (a missing tile or action, x or y outside
+// 0..32767, z outside 0..3, type or rotation outside a byte, walk radius outside a short) is kept
+// as a SpawnEntry on the side, and its id column holds the slot instead.
+public final class SpawnColumns {
+    private static final ActionType[] ACTIONS = ActionType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    // kind: bits 0-2 action ordinal, bits 3-6 direction ordinal + 1 (0 = none), bit 7 overflow
+    private static final int DIRECTION_SHIFT = 3;
+    private static final int OVERFLOW = 0x80;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_TYPE = 1 << 1;
+    private static final int HAS_ROTATION = 1 << 2;
+    private static final int HAS_WALK = 1 << 3;
+    private static final int HAS_AGGRESSIVE = 1 << 4;
+    private static final int AGGRESSIVE = 1 << 5;
+
+    // region buckets: z in bits 18-19, region x in 9-17, region y in 0-8
+    private static final int REGIONS = 1 << 9;
+
+    private int size;
+    private byte[] kind = new byte[16];
+    private int[] tile = new int[16];
+    private int[] id = new int[16];
+    private byte[] type = new byte[16];
+    private byte[] rotation = new byte[16];
+    private short[] walk = new short[16];
+    private byte[] flags = new byte[16];
+    private final List<SpawnEntry> overflow = new ArrayList<>();
+    // set by finish(): row numbers by bucket, in row order within one, and where each bucket starts
+    private int[] order;
+    private int[] starts;
+    // overflow rows with a tile, searched one by one
+    private int[] spilled;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFinished() {
+        return order != null;
+    }
+
+    public void ensureCapacity(int n) {
+        if (n <= kind.length) return;
+        int cap = Math.max(n, kind.length + (kind.length >> 1));
+        kind = Arrays.copyOf(kind, cap);
+        tile = Arrays.copyOf(tile, cap);
+        id = Arrays.copyOf(id, cap);
+        type = Arrays.copyOf(type, cap);
+        rotation = Arrays.copyOf(rotation, cap);
+        walk = Arrays.copyOf(walk, cap);
+        flags = Arrays.copyOf(flags, cap);
+    }
+
+    public void add(SpawnEntry e) {
+        if (order != null) throw new IllegalStateException("SpawnColumns is read-only once finished");
+        ensureCapacity(size + 1);
+        store(size++, e);
+    }
+
+    // trims the columns and builds the region index with a counting sort; no rows can be added after
+    public void finish() {
+        if (order != null) return;
+        kind = Arrays.copyOf(kind, size);
+        tile = Arrays.copyOf(tile, size);
+        id = Arrays.copyOf(id, size);
+        type = Arrays.copyOf(type, size);
+        rotation = Arrays.copyOf(rotation, size);
+        walk = Arrays.copyOf(walk, size);
+        flags = Arrays.copyOf(flags, size);
+        int[] at = new int[4 * REGIONS * REGIONS + 1];
+        int packed = 0;
+        for (int i = 0; i < size; i++) {
+            if ((kind[i] & OVERFLOW) != 0) continue;
+            at[bucket(tile[i]) + 1]++;
+            packed++;
+        }
+        for (int b = 1; b < at.length; b++) at[b] += at[b - 1];
+        int[] rows = new int[packed];
+        int[] next = at.clone();
+        int[] off = new int[size - packed];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if ((kind[i] & OVERFLOW) == 0) rows[next[bucket(tile[i])]++] = i;
+            else if (overflow.get(id[i]).tile != null) off[n++] = i;
+        }
+        starts = at;
+        spilled = Arrays.copyOf(off, n);
+        order = rows;
+    }
+
+    // a fresh SpawnEntry for row i; nothing the caller does to it reaches the columns
+    public SpawnEntry get(int i) {
+        check(i);
+        return row().at(i).toEntry(new SpawnEntry());
+    }
+
+    public Row row() {
+        return new Row();
+    }
+
+    // the rows as SpawnEntry objects built on each get, for code written against a List
+    public List<SpawnEntry> asList() {
+        return new View();
+    }
+
+    // inclusive bounds, in either order; planes lo to hi, lowest first, with the rows that didn't
+    // fit the columns last. The one Row is moved from match to match
+    public void forEachIn(int x0, int y0, int x1, int y1, int lo, int hi, Consumer<Row> action) {
+        checkFinished();
+        int minX = Math.min(x0, x1), maxX = Math.max(x0, x1);
+        int minY = Math.min(y0, y1), maxY = Math.max(y0, y1);
+        int rx0 = Math.max(0, minX) >> TileKey.REGION_SHIFT, rx1 = Math.min(0x7FFF, maxX) >> TileKey.REGION_SHIFT;
+        int ry0 = Math.max(0, minY) >> TileKey.REGION_SHIFT, ry1 = Math.min(0x7FFF, maxY) >> TileKey.REGION_SHIFT;
+        Row r = new Row();
+        for (int z = Math.max(0, lo); z <= Math.min(3, hi); z++) {
+            for (int rx = rx0; rx <= rx1; rx++) {
+                for (int ry = ry0; ry <= ry1; ry++) {
+                    int b = (z * REGIONS + rx) * REGIONS + ry;
+                    for (int k = starts[b], end = starts[b + 1]; k < end; k++) {
+                        int t = tile[order[k]];
+                        int x = t >>> 17, y = (t >>> 2) & 0x7FFF;
+                        if (x >= minX && x <= maxX && y >= minY && y <= maxY) action.accept(r.at(order[k]));
+                    }
+                }
+            }
+        }
+        for (int i : spilled) {
+            Tile t = overflow.get(id[i]).tile;
+            if (t.x >= minX && t.x <= maxX && t.y >= minY && t.y <= maxY && t.z >= lo && t.z <= hi) action.accept(r.at(i));
+        }
+    }
+
+    // the first row on the tile, or -1
+    public int firstAt(int x, int y, int z) {
+        return first(x, y, z, z);
+    }
+
+    // the first row on x, y on any plane, or -1
+    public int firstAtXY(int x, int y) {
+        return first(x, y, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private int first(int x, int y, int lo, int hi) {
+        checkFinished();
+        int best = -1;
+        if ((x & ~0x7FFF) == 0 && (y & ~0x7FFF) == 0) {
+            int want = x << 17 | y << 2;
+            for (int z = Math.max(0, lo); z <= Math.min(3, hi); z++) {
+                int b = bucket(want | z);
+                // rows are in row order within a bucket, so the first match is its earliest
+                for (int k = starts[b], end = starts[b + 1]; k < end; k++) {
+                    if (tile[order[k]] != (want | z)) continue;
+                    if (best < 0 || order[k] < best) best = order[k];
+                    break;
+                }
+            }
+        }
+        for (int i : spilled) {
+            if (best >= 0 && i > best) break;
+            Tile t = overflow.get(id[i]).tile;
+            if (t.x == x && t.y == y && t.z >= lo && t.z <= hi) return i;
+        }
+        return best;
+    }
+
+    private static int bucket(int packedTile) {
+        int x = packedTile >>> 17, y = (packedTile >>> 2) & 0x7FFF, z = packedTile & 3;
+        return (z * REGIONS + (x >> TileKey.REGION_SHIFT)) * REGIONS + (y >> TileKey.REGION_SHIFT);
+    }
+
+    private void store(int i, SpawnEntry e) {
+        if (!fits(e)) {
+            kind[i] = (byte) OVERFLOW;
+            id[i] = overflow.size();
+            overflow.add(e.copy());
+            return;
+        }
+        kind[i] = (byte) (e.action.ordinal() | (e.direction == null ? 0 : e.direction.ordinal() + 1) << DIRECTION_SHIFT);
+        tile[i] = e.tile.x << 17 | e.tile.y << 2 | e.tile.z;
+        int f = 0;
+        if (e.id != null) {
+            f |= HAS_ID;
+            id[i] = e.id;
+        }
+        if (e.type != null) {
+            f |= HAS_TYPE;
+            type[i] = (byte) (int) e.type;
+        }
+        if (e.rotation != null) {
+            f |= HAS_ROTATION;
+            rotation[i] = (byte) (int) e.rotation;
+        }
+        if (e.walkRadius != null) {
+            f |= HAS_WALK;
+            walk[i] = (short) (int) e.walkRadius;
+        }
+        if (e.aggressive != null) {
+            f |= HAS_AGGRESSIVE;
+            if (e.aggressive) f |= AGGRESSIVE;
+        }
+        flags[i] = (byte) f;
+    }
+
+    private static boolean fits(SpawnEntry e) {
+        if (e.action == null || e.tile == null) return false;
+        if ((e.tile.x & ~0x7FFF) != 0 || (e.tile.y & ~0x7FFF) != 0 || (e.tile.z & ~3) != 0) return false;
+        if (e.type != null && e.type != (byte) (int) e.type) return false;
+        if (e.rotation != null && e.rotation != (byte) (int) e.rotation) return false;
+        return e.walkRadius == null || e.walkRadius == (short) (int) e.walkRadius;
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+    }
+
+    private void checkFinished() {
+        if (order == null) throw new IllegalStateException("SpawnColumns is not finished");
+    }
+
+    // a movable view of one row: at(i) repositions it, so one Row can walk the whole store
+    // without allocating
+    public final class Row {
+        private int i = -1;
+
+        private Row() {}
+
+        public Row at(int index) {
+            check(index);
+            i = index;
+            return this;
+        }
+
+        public int index() {
+            return i;
+        }
+
+        private SpawnEntry spilled() {
+            return (kind[i] & OVERFLOW) != 0 ? overflow.get(id[i]) : null;
+        }
+
+        public ActionType action() {
+            SpawnEntry o = spilled();
+            return o != null ? o.action : ACTIONS[kind[i] & 7];
+        }
+
+        public boolean hasTile() {
+            SpawnEntry o = spilled();
+            return o == null || o.tile != null;
+        }
+
+        public int x() {
+            SpawnEntry o = spilled();
+            return o != null ? o.tile.x : tile[i] >>> 17;
+        }
+
+        public int y() {
+            SpawnEntry o = spilled();
+            return o != null ? o.tile.y : (tile[i] >>> 2) & 0x7FFF;
+        }
+
+        public int z() {
+            SpawnEntry o = spilled();
+            return o != null ? o.tile.z : tile[i] & 3;
+        }
+
+        public boolean hasId() {
+            SpawnEntry o = spilled();
+            return o != null ? o.id != null : (flags[i] & HAS_ID) != 0;
+        }
+
+        public int id() {
+            SpawnEntry o = spilled();
+            return o != null ? o.id : id[i];
+        }
+
+        public Direction direction() {
+            SpawnEntry o = spilled();
+            if (o != null) return o.direction;
+            int d = (kind[i] >> DIRECTION_SHIFT) & 0xF;
+            return d == 0 ? null : DIRECTIONS[d - 1];
+        }
+
+        // fills into with this row and returns it, so a loop can reuse one entry
+        public SpawnEntry toEntry(SpawnEntry into) {
+            SpawnEntry o = spilled();
+            if (o != null) {
+                into.action = o.action;
+                into.tile = o.tile == null ? null : new Tile(o.tile.x, o.tile.y, o.tile.z);
+                into.id = o.id;
+                into.type = o.type;
+                into.rotation = o.rotation;
+                into.walkRadius = o.walkRadius;
+                into.aggressive = o.aggressive;
+                into.direction = o.direction;
+                return into;
+            }
+            int f = flags[i];
+            into.action = action();
+            if (into.tile == null) into.tile = new Tile();
+            into.tile.x = x();
+            into.tile.y = y();
+            into.tile.z = z();
+            into.id = (f & HAS_ID) != 0 ? id[i] : null;
+            into.type = (f & HAS_TYPE) != 0 ? (int) type[i] : null;
+            into.rotation = (f & HAS_ROTATION) != 0 ? (int) rotation[i] : null;
+            into.walkRadius = (f & HAS_WALK) != 0 ? (int) walk[i] : null;
+            into.aggressive = (f & HAS_AGGRESSIVE) != 0 ? (f & AGGRESSIVE) != 0 : null;
+            into.direction = direction();
+            return into;
+        }
+    }
+
+    private final class View extends AbstractList<SpawnEntry> implements RandomAccess {
+        @Override
+        public SpawnEntry get(int i) {
+            return SpawnColumns.this.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
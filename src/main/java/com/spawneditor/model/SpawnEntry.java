@@ -9,6 +9,7 @@ public class SpawnEntry {
     public Integer walkRadius;
     public Boolean aggressive;
     public Direction direction;
+    int slot = -1; // place in the SpawnProject list holding it, see SpawnProject.Entries
 
     public boolean matchesTile(Tile t) {
         return t != null && tile != null && tile.equals(t);
@@ -17,7 +18,7 @@ public class SpawnEntry {
     public SpawnEntry copy() {
         SpawnEntry e = new SpawnEntry();
         e.action = this.action;
-        e.tile = new Tile(tile.x, tile.y, tile.z);
+        e.tile = tile == null ? null : new Tile(tile.x, tile.y, tile.z);
         e.id = this.id;
         e.type = this.type;
         e.rotation = this.rotation;
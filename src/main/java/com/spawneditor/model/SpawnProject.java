@@ -4,23 +4,52 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class SpawnProject {
-    private final List<SpawnEntry> entries = new ArrayList<>();
+    private final Entries entries = new Entries();
+    // by tile, column and region, in list order; a mid-list insert leaves them to be rebuilt
+    private final LongBuckets<SpawnEntry> byTile = new LongBuckets<>();
+    private final LongBuckets<SpawnEntry> byColumn = new LongBuckets<>();
+    private final RegionIndex<SpawnEntry> byRegion = new RegionIndex<>(e -> TileKey.of(e.tile));
+    private boolean stale;
+    private final ChangeBus<SpawnEntry> changes = new ChangeBus<>();
+    // a large dump held as columns, see JsonStore.loadInto; the entries list is empty meanwhile
+    private SpawnColumns dump;
 
     public List<SpawnEntry> getEntries() { return entries; }
-    public void clear() { entries.clear(); }
+    public ChangeBus<SpawnEntry> changes() { return changes; }
+    public void clear() { dump = null; entries.clear(); }
 
+    // the spawns are shown from the columns and can't be edited until the next load
+    public void setDump(SpawnColumns columns) {
+        entries.clear();
+        columns.finish();
+        dump = columns;
+        changes.reset();
+    }
+
+    public SpawnColumns dump() { return dump; }
+    public boolean isReadOnly() { return dump != null; }
+
+    // a dump's entries are fresh copies of its rows, made for each call
     public Optional<SpawnEntry> findFirstAt(Tile t) {
         if (t == null) return Optional.empty();
-        for (SpawnEntry e : entries) if (e.matchesTile(t)) return Optional.of(e);
+        if (dump != null) return rowOf(dump.firstAt(t.x, t.y, t.z));
+        index();
+        long k = TileKey.of(t.x, t.y, t.z);
+        for (int i = 0, n = byTile.count(k); i < n; i++) {
+            SpawnEntry e = byTile.get(k, i);
+            if (e.matchesTile(t)) return Optional.of(e);
+        }
         return Optional.empty();
     }
 
     public Optional<SpawnEntry> findFirstAtXY(Tile t) {
         if (t == null) return Optional.empty();
-        for (SpawnEntry e : entries) {
-            if (e.tile != null && e.tile.x == t.x && e.tile.y == t.y) {
-                return Optional.of(e);
-            }
+        if (dump != null) return rowOf(dump.firstAtXY(t.x, t.y));
+        index();
+        long k = TileKey.column(t.x, t.y);
+        for (int i = 0, n = byColumn.count(k); i < n; i++) {
+            SpawnEntry e = byColumn.get(k, i);
+            if (e.tile.x == t.x && e.tile.y == t.y) return Optional.of(e);
         }
         return Optional.empty();
     }
@@ -31,22 +60,300 @@ public class SpawnProject {
         return findFirstAtXY(t);
     }
 
+    private Optional<SpawnEntry> rowOf(int row) {
+        return row < 0 ? Optional.empty() : Optional.of(dump.get(row));
+    }
+
     public void upsert(SpawnEntry entry) {
-        for (int i = 0; i < entries.size(); i++) {
-            SpawnEntry e = entries.get(i);
-            if (e.action == entry.action && e.matchesTile(entry.tile)) {
-                entries.set(i, entry.copy());
-                return;
-            }
-        }
-        entries.add(entry.copy());
+        SpawnEntry cur = firstWith(entry.action, entry.tile);
+        if (cur == null) entries.add(entry.copy());
+        else entries.replace(cur, entry.copy());
     }
 
     public void remove(SpawnEntry entry) {
-        entries.removeIf(e -> e.action == entry.action && e.matchesTile(entry.tile));
+        SpawnEntry cur;
+        while ((cur = firstWith(entry.action, entry.tile)) != null) entries.remove(cur);
+    }
+
+    // the last entry with the action and tile is updated in place, as JsonStore.upsertOne does
+    public void upsertLast(SpawnEntry entry) {
+        SpawnEntry cur = lastWith(entry.action, entry.tile);
+        if (cur == null) {
+            entries.add(entry.copy());
+            return;
+        }
+        cur.id = entry.id;
+        cur.type = entry.type;
+        cur.rotation = entry.rotation;
+        cur.walkRadius = entry.walkRadius;
+        cur.aggressive = entry.aggressive;
+        cur.direction = entry.direction;
+        changes.updated(cur);
+    }
+
+    // only the last entry with the action and tile goes, as JsonStore.deleteOne does
+    public boolean removeLast(SpawnEntry entry) {
+        SpawnEntry cur = lastWith(entry.action, entry.tile);
+        return cur != null && entries.remove(cur);
+    }
+
+    // appends a copy even if an entry with the same action and tile exists; see JsonStore.appendOne
+    public SpawnEntry append(SpawnEntry entry) {
+        SpawnEntry copy = entry.copy();
+        entries.add(copy);
+        return copy;
+    }
+
+    // the entry upsertLast and removeLast would act on
+    public Optional<SpawnEntry> findLast(ActionType action, Tile t) {
+        return Optional.ofNullable(lastWith(action, t));
+    }
+
+    private SpawnEntry firstWith(ActionType action, Tile t) {
+        if (t == null) return null;
+        index();
+        long k = TileKey.of(t.x, t.y, t.z);
+        for (int i = 0, n = byTile.count(k); i < n; i++) {
+            SpawnEntry e = byTile.get(k, i);
+            if (e.action == action && e.matchesTile(t)) return e;
+        }
+        return null;
+    }
+
+    private SpawnEntry lastWith(ActionType action, Tile t) {
+        if (t == null) return null;
+        index();
+        long k = TileKey.of(t.x, t.y, t.z);
+        for (int i = byTile.count(k) - 1; i >= 0; i--) {
+            SpawnEntry e = byTile.get(k, i);
+            if (e.action == action && e.matchesTile(t)) return e;
+        }
+        return null;
+    }
+
+    public List<SpawnEntry> entriesInRect(int x0, int y0, int x1, int y1, int plane) {
+        if (dump != null) return entriesInRect(x0, y0, x1, y1, plane, plane);
+        index();
+        return byRegion.query(x0, y0, x1, y1, plane);
+    }
+
+    // planes lo to hi inclusive, lowest first
+    public List<SpawnEntry> entriesInRect(int x0, int y0, int x1, int y1, int lo, int hi) {
+        if (dump != null) {
+            List<SpawnEntry> out = new ArrayList<>();
+            dump.forEachIn(x0, y0, x1, y1, lo, hi, r -> out.add(r.toEntry(new SpawnEntry())));
+            return out;
+        }
+        index();
+        return byRegion.query(x0, y0, x1, y1, lo, hi);
     }
 
     public List<SpawnEntry> entriesAtPlane(int z) {
         return entries.stream().filter(e -> e.tile != null && e.tile.z == z).collect(Collectors.toList());
     }
+
+    private void index() {
+        if (!stale) return;
+        byTile.clear();
+        byColumn.clear();
+        byRegion.clear();
+        byTile.ensureCapacity(entries.size());
+        byColumn.ensureCapacity(entries.size());
+        stale = false;
+        for (SpawnEntry e : entries) link(e);
+    }
+
+    private void link(SpawnEntry e) {
+        if (stale || e == null || e.tile == null) return;
+        byTile.add(TileKey.of(e.tile.x, e.tile.y, e.tile.z), e);
+        byColumn.add(TileKey.column(e.tile.x, e.tile.y), e);
+        byRegion.add(e);
+    }
+
+    private void unlink(SpawnEntry e) {
+        if (stale || e == null || e.tile == null) return;
+        byTile.remove(TileKey.of(e.tile.x, e.tile.y, e.tile.z), e);
+        byColumn.remove(TileKey.column(e.tile.x, e.tile.y), e);
+        byRegion.remove(e);
+    }
+
+    // now has taken old's slot; on the same tile it takes old's place in the buckets too
+    private void relink(SpawnEntry old, SpawnEntry now) {
+        if (stale) return;
+        if (old.tile != null && now.tile != null && old.tile.equals(now.tile)) {
+            byTile.replace(TileKey.of(old.tile.x, old.tile.y, old.tile.z), old, now);
+            byColumn.replace(TileKey.column(old.tile.x, old.tile.y), old, now);
+            byRegion.replace(old, now);
+            return;
+        }
+        unlink(old);
+        if (now.tile == null) return;
+        long k = TileKey.of(now.tile.x, now.tile.y, now.tile.z);
+        long c = TileKey.column(now.tile.x, now.tile.y);
+        byTile.add(k, before(byTile, k, now.slot), now);
+        byColumn.add(c, before(byColumn, c, now.slot), now);
+        byRegion.add(now);
+    }
+
+    // how many of the key's values sit before slot in the list
+    private static int before(LongBuckets<SpawnEntry> buckets, long key, int slot) {
+        int lo = 0, hi = buckets.count(key);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buckets.get(key, mid).slot < slot) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // every structural change goes through here so the indexes follow. Each entry knows its slot;
+    // a removal leaves a hole that the next positional access closes, so remove(Object) is O(1)
+    // and a run of removals costs one pass
+    private final class Entries extends AbstractList<SpawnEntry> implements RandomAccess {
+        private SpawnEntry[] slots = new SpawnEntry[16];
+        private int end; // slots in use, holes included
+        private int size;
+
+        @Override
+        public SpawnEntry get(int i) {
+            Objects.checkIndex(i, size);
+            pack();
+            return slots[i];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            int s = slotOf(o);
+            if (s < 0) return -1;
+            pack();
+            return ((SpawnEntry) o).slot;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return slotOf(o) >= 0;
+        }
+
+        @Override
+        public SpawnEntry set(int i, SpawnEntry e) {
+            Objects.checkIndex(i, size);
+            pack();
+            SpawnEntry old = slots[i];
+            if (old != e) replace(old, e);
+            return old;
+        }
+
+        // e takes old's slot, old leaves the list
+        void replace(SpawnEntry old, SpawnEntry e) {
+            int s = slotOf(old);
+            if (s < 0) throw new IllegalArgumentException("Not in this project");
+            slots[s] = e;
+            e.slot = s;
+            old.slot = -1;
+            relink(old, e);
+            changes.removed(old);
+            changes.added(e);
+        }
+
+        @Override
+        public void add(int i, SpawnEntry e) {
+            Objects.checkIndex(i, size + 1);
+            if (i == size) {
+                grow(end + 1);
+                slots[end] = e;
+                e.slot = end++;
+                size++;
+                link(e);
+            } else {
+                pack();
+                grow(end + 1);
+                System.arraycopy(slots, i, slots, i + 1, end - i);
+                slots[i] = e;
+                end++;
+                size++;
+                for (int s = i; s < end; s++) slots[s].slot = s;
+                stale = true;
+            }
+            modCount++;
+            changes.added(e);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends SpawnEntry> c) {
+            grow(end + c.size());
+            return super.addAll(c);
+        }
+
+        @Override
+        public SpawnEntry remove(int i) {
+            Objects.checkIndex(i, size);
+            pack();
+            return removeSlot(i);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int s = slotOf(o);
+            if (s < 0) return false;
+            removeSlot(s);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            for (int s = 0; s < end; s++) {
+                if (slots[s] != null) slots[s].slot = -1;
+            }
+            slots = new SpawnEntry[16];
+            end = 0;
+            size = 0;
+            modCount++;
+            byTile.clear();
+            byColumn.clear();
+            byRegion.clear();
+            stale = false;
+            changes.reset();
+        }
+
+        private SpawnEntry removeSlot(int s) {
+            SpawnEntry old = slots[s];
+            slots[s] = null;
+            old.slot = -1;
+            if (s == end - 1) end--;
+            size--;
+            modCount++;
+            unlink(old);
+            changes.removed(old);
+            return old;
+        }
+
+        private int slotOf(Object o) {
+            if (!(o instanceof SpawnEntry)) return -1;
+            int s = ((SpawnEntry) o).slot;
+            return s >= 0 && s < end && slots[s] == o ? s : -1;
+        }
+
+        // closes the holes; slots only move down, so the buckets stay in list order
+        private void pack() {
+            if (size == end) return;
+            int w = 0;
+            for (int r = 0; r < end; r++) {
+                SpawnEntry e = slots[r];
+                if (e == null) continue;
+                e.slot = w;
+                slots[w++] = e;
+            }
+            Arrays.fill(slots, w, end, null);
+            end = w;
+        }
+
+        private void grow(int n) {
+            if (n > slots.length) slots = Arrays.copyOf(slots, Math.max(n, slots.length + (slots.length >> 1)));
+        }
+    }
 }
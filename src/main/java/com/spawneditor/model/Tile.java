@@ -1,7 +1,5 @@
 package com.spawneditor.model;
 
-import java.util.Objects;
-
 public class Tile {
     public Tile() {}
     public int x;
@@ -20,7 +18,7 @@ public class Tile {
     }
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        return Long.hashCode(TileKey.of(x, y, z));
     }
     @Override
     public String toString() {
@@ -0,0 +1,54 @@
+package com.spawneditor.model;
+
+// x and y in 24 signed bits, z in 16: exact for |x|, |y| < 2^23 and |z| < 2^15
+public final class TileKey {
+    public static final int REGION_SHIFT = 6;
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    private TileKey() {}
+
+    public static long of(int x, int y, int z) {
+        return ((long) (x & 0xFFFFFF) << 40) | ((long) (y & 0xFFFFFF) << 16) | (z & 0xFFFF);
+    }
+
+    public static long of(Tile t) {
+        return of(t.x, t.y, t.z);
+    }
+
+    public static int x(long key) {
+        return (int) (key >> 40);
+    }
+
+    public static int y(long key) {
+        return (int) (key << 24 >> 40);
+    }
+
+    public static int z(long key) {
+        return (short) key;
+    }
+
+    public static long column(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int regionX(int x) {
+        return x >> REGION_SHIFT;
+    }
+
+    public static int regionY(int y) {
+        return y >> REGION_SHIFT;
+    }
+
+    public static int localX(int x) {
+        return x & (REGION_SIZE - 1);
+    }
+
+    public static int localY(int y) {
+        return y & (REGION_SIZE - 1);
+    }
+
+    // region coordinates packed like a column key
+    public static long region(int x, int y) {
+        return column(regionX(x), regionY(y));
+    }
+}
@@ -0,0 +1,23 @@
+package com.spawneditor.tools;
+
+import com.spawneditor.io.SpawnShards;
+
+import java.io.File;
+import java.io.IOException;
+
+// command line split/join, outside the editor: java -cp SpawnEditor.jar com.spawneditor.tools.SpawnShardsTool
+public final class SpawnShardsTool {
+    private SpawnShardsTool() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("split") || args[0].equals("join"))) {
+            System.err.println("usage: SpawnShardsTool split <spawns.json> <dir> | join <dir> <spawns.json>");
+            System.exit(2);
+        }
+        if (args[0].equals("split")) {
+            System.out.println(SpawnShards.split(new File(args[1]), new File(args[2])) + " region files written to " + args[2]);
+        } else {
+            System.out.println(SpawnShards.join(new File(args[1]), new File(args[2])) + " elements written to " + args[2]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.spawneditor.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// substring lookup over int-keyed strings; queries under three characters scan
+public final class TrigramIndex {
+    private String[] terms = new String[64];
+    private int[] keys = new int[64];
+    private int count;
+    private final Map<Long, Postings> grams = new HashMap<>();
+
+    // term numbers, ascending, since terms are numbered as they are added
+    private static final class Postings {
+        int[] terms = new int[4];
+        int size;
+
+        void add(int t) {
+            if (size > 0 && terms[size - 1] == t) return;
+            if (size == terms.length) terms = Arrays.copyOf(terms, size * 2);
+            terms[size++] = t;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void add(int key, String term) {
+        if (count == terms.length) {
+            terms = Arrays.copyOf(terms, count * 2);
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        int t = count++;
+        terms[t] = term;
+        keys[t] = key;
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            grams.computeIfAbsent(gram(term, i), g -> new Postings()).add(t);
+        }
+    }
+
+    // each key whose term contains q, in the order the terms were added
+    public void query(String q, IntConsumer out) {
+        if (q.length() < 3) {
+            for (int t = 0; t < count; t++) {
+                if (terms[t].contains(q)) out.accept(keys[t]);
+            }
+            return;
+        }
+        Postings[] lists = new Postings[q.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = grams.get(gram(q, i));
+            if (lists[i] == null) return;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        int[] from = new int[lists.length];
+        Postings shortest = lists[0];
+        next:
+        for (int j = 0; j < shortest.size; j++) {
+            int t = shortest.terms[j];
+            for (int k = 1; k < lists.length; k++) {
+                Postings p = lists[k];
+                int at = Arrays.binarySearch(p.terms, from[k], p.size, t);
+                if (at < 0) {
+                    from[k] = -at - 1;
+                    if (from[k] == p.size) return;
+                    continue next;
+                }
+                from[k] = at;
+            }
+            // the trigrams can all be there without being in a row
+            if (terms[t].contains(q)) out.accept(keys[t]);
+        }
+    }
+
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
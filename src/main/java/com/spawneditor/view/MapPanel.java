@@ -1,10 +1,14 @@
 package com.spawneditor.view;
 
+import com.spawneditor.io.DynamicNpcStore;
 import com.spawneditor.io.Paths;
 import com.spawneditor.model.ActionType;
+import com.spawneditor.model.ChangeBus;
+import com.spawneditor.model.SpawnColumns;
 import com.spawneditor.model.SpawnEntry;
 import com.spawneditor.model.SpawnProject;
 import com.spawneditor.model.Tile;
+import com.spawneditor.model.TileKey;
 import com.spawneditor.model.DynamicNpcEntry;
 
 import javax.swing.*;
@@ -15,12 +19,20 @@ import java.awt.image.BufferedImage;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.List;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
 
 public class MapPanel extends JComponent {
     private static final int CANVAS_PAD = 400;
+    private static final Color OBJ_V = new Color(0xC800FFFF, true); // cyan
+    private static final Color OVER_V = new Color(0xC800BFFF, true); // light blue
+    private static final Color DEL_V = new Color(0xC8FF0000, true); // red
+    private static final Color NPC_V = new Color(0xC8FFFF00, true); // yellow
+    private static final Color DYN_V = new Color(0xDCFF00FF, true); // magenta
+    private static final Color OBJ_G = halfAlpha(OBJ_V);
+    private static final Color OVER_G = halfAlpha(OVER_V);
+    private static final Color DEL_G = halfAlpha(DEL_V);
+    private static final Color NPC_G = halfAlpha(NPC_V);
+    private static final Color DYN_G = halfAlpha(DYN_V);
     private final BufferedImage map;
     private final SpawnProject project;
     private double zoom = 1.0;
@@ -35,7 +47,7 @@ public class MapPanel extends JComponent {
     private Point dragStartMouse;
     private Tile hoverTile;
     private Tile selectedTile;
-    private Supplier<List<DynamicNpcEntry>> dynamicSupplier;
+    private DynamicNpcStore dynamicStore;
     private int currentPlane = 0;
     private final boolean[] ghostPlane = {false, true, true, true};
     private final Rectangle overlayBounds = new Rectangle();
@@ -124,8 +136,12 @@ public class MapPanel extends JComponent {
                     setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
                 } else {
                     setCursor(Cursor.getDefaultCursor());
-                    hoverTile = toTile(e.getX(), e.getY());
-                    repaint();
+                    // one Tile reused for the hover, and no repaint while the pointer stays on it
+                    boolean first = hoverTile == null;
+                    if (first) hoverTile = new Tile();
+                    long before = TileKey.of(hoverTile);
+                    toTile(e.getX(), e.getY(), hoverTile);
+                    if (first || TileKey.of(hoverTile) != before) repaint();
                 }
             }
         });
@@ -234,11 +250,48 @@ public class MapPanel extends JComponent {
         return true;
     }
 
-    public void setDynamicSupplier(Supplier<List<DynamicNpcEntry>> supplier) {
-        this.dynamicSupplier = supplier;
+    public void setDynamicStore(DynamicNpcStore store) {
+        this.dynamicStore = store;
         repaint();
     }
 
+    // repaints just the tiles that changed
+    public void spawnsChanged(ChangeBus.Changes<SpawnEntry> c) {
+        if (c.reset) {
+            repaint();
+            return;
+        }
+        for (SpawnEntry e : c.added) repaintTile(e.tile);
+        for (SpawnEntry e : c.updated) repaintTile(e.tile);
+        for (SpawnEntry e : c.removed) repaintTile(e.tile);
+    }
+
+    // an updated dynamic NPC may have moved away from a tile that is no longer known
+    public void dynamicsChanged(ChangeBus.Changes<DynamicNpcEntry> c) {
+        if (c.reset || !c.updated.isEmpty()) {
+            repaint();
+            return;
+        }
+        Tile t = new Tile();
+        for (DynamicNpcEntry d : c.added) repaintTile(dynamicTile(d, t));
+        for (DynamicNpcEntry d : c.removed) repaintTile(dynamicTile(d, t));
+    }
+
+    private static Tile dynamicTile(DynamicNpcEntry d, Tile into) {
+        into.x = d.x;
+        into.y = d.y;
+        into.z = d.z;
+        return into;
+    }
+
+    private void repaintTile(Tile t) {
+        if (t == null) return;
+        Rectangle r = tileToRect(t);
+        int x = (int) Math.floor(CANVAS_PAD + r.x * zoom) - 1;
+        int y = (int) Math.floor(CANVAS_PAD + r.y * zoom) - 1;
+        repaint(x, y, (int) Math.ceil(r.width * zoom) + 2, (int) Math.ceil(r.height * zoom) + 2);
+    }
+
     public void setOnTileClicked(Consumer<Tile> c) {
         this.onTileClicked = c;
     }
@@ -284,6 +337,10 @@ public class MapPanel extends JComponent {
     }
 
     private Tile toTile(int px, int py) {
+        return toTile(px, py, new Tile());
+    }
+
+    private Tile toTile(int px, int py, Tile into) {
         double x = (px - CANVAS_PAD) / zoom;
         double y = (py - CANVAS_PAD) / zoom;
         int col = (int) Math.floor(x / regionW);
@@ -298,21 +355,29 @@ public class MapPanel extends JComponent {
         int tyFromBottom = 63 - tyTop;
         int worldX = (Paths.RX_MIN + col) * Paths.REGION_TILE_SIZE + tx;
         int worldY = (Paths.RY_MIN + rowFromBottom) * Paths.REGION_TILE_SIZE + tyFromBottom;
-        return new Tile(worldX, worldY, currentPlane);
+        into.x = worldX;
+        into.y = worldY;
+        into.z = currentPlane;
+        return into;
     }
 
     private Rectangle tileToRect(Tile t) {
-        int col = (t.x / Paths.REGION_TILE_SIZE) - Paths.RX_MIN;
-        int rowFromBottom = (t.y / Paths.REGION_TILE_SIZE) - Paths.RY_MIN;
+        return tileToRect(t.x, t.y, new Rectangle());
+    }
+
+    private Rectangle tileToRect(int x, int y, Rectangle into) {
+        int col = TileKey.regionX(x) - Paths.RX_MIN;
+        int rowFromBottom = TileKey.regionY(y) - Paths.RY_MIN;
         int rowTop = (rows - 1) - rowFromBottom;
-        int oxTiles = t.x % Paths.REGION_TILE_SIZE;
-        int oyTilesFromBottom = t.y % Paths.REGION_TILE_SIZE;
+        int oxTiles = TileKey.localX(x);
+        int oyTilesFromBottom = TileKey.localY(y);
         int oyTilesTop = 63 - oyTilesFromBottom;
         double px = (col * regionW) + oxTiles * (regionW / Paths.REGION_TILE_SIZE);
         double py = (rowTop * regionH) + oyTilesTop * (regionH / Paths.REGION_TILE_SIZE);
         double pw = (regionW / Paths.REGION_TILE_SIZE);
         double ph = (regionH / Paths.REGION_TILE_SIZE);
-        return new Rectangle((int) Math.round(px), (int) Math.round(py), (int) Math.ceil(pw), (int) Math.ceil(ph));
+        into.setBounds((int) Math.round(px), (int) Math.round(py), (int) Math.ceil(pw), (int) Math.ceil(ph));
+        return into;
     }
 
     @Override
@@ -457,50 +522,62 @@ public class MapPanel extends JComponent {
         g.dispose();
     }
 
+    // only entries inside the clip are drawn; ghost planes first so the active plane ends on top
     private void drawOverlays(Graphics2D g) {
-        final Color cObjV = new Color(0xC800FFFF, true); // cyan
-        final Color cOverV = new Color(0xC800BFFF, true); // light blue
-        final Color cDelV = new Color(0xC8FF0000, true); // red
-        final Color cNpcV = new Color(0xC8FFFF00, true); // yellow
-        final Color cDynV = new Color(0xDCFF00FF, true); // magenta
-        final Color cObjG = halfAlpha(cObjV);
-        final Color cOverG = halfAlpha(cOverV);
-        final Color cDelG = halfAlpha(cDelV);
-        final Color cNpcG = halfAlpha(cNpcV);
-        final Color cDynG = halfAlpha(cDynV);
-        for (SpawnEntry e : project.getEntries()) {
-            if (e.tile == null) continue;
-            if (!typeVisible.getOrDefault(e.action, true)) continue;
-            int z = clampZ(e.tile.z);
-            boolean onActive = (z == currentPlane);
-            boolean ghost = !onActive && ghostPlane[z];
-            if (!onActive && !ghost) continue;
-            Rectangle r = tileToRect(e.tile);
-            switch (e.action) {
-                case SPAWN_OBJECT -> g.setColor(ghost ? cObjG  : cObjV);
-                case SPAWN_OVER_OBJECT -> g.setColor(ghost ? cOverG : cOverV);
-                case SPAWN_NPC -> g.setColor(ghost ? cNpcG : cNpcV);
-                case DELETE_OBJECT -> g.setColor(ghost ? cDelG : cDelV);
-                default -> {
-                    continue;
+        Rectangle r = new Rectangle();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, map != null ? map.getWidth() : 1024, map != null ? map.getHeight() : 1024);
+        int x0 = worldX(clip.x) - 1, x1 = worldX(clip.x + clip.width) + 1;
+        int y0 = worldY(clip.y + clip.height) - 1, y1 = worldY(clip.y) + 1;
+        for (int i = 0; i < 4; i++) {
+            int z = i < currentPlane ? i : i < 3 ? i + 1 : currentPlane;
+            boolean ghost = z != currentPlane;
+            if (ghost && !ghostPlane[z]) continue;
+            // planes outside 0-3 are drawn on the nearest one, as clampZ does
+            int lo = z == 0 ? Integer.MIN_VALUE : z, hi = z == 3 ? Integer.MAX_VALUE : z;
+            SpawnColumns dump = project.dump();
+            if (dump != null) {
+                dump.forEachIn(x0, y0, x1, y1, lo, hi, row -> fillEntry(g, row.action(), row.x(), row.y(), row.z(), r));
+            } else {
+                for (SpawnEntry e : project.entriesInRect(x0, y0, x1, y1, lo, hi)) {
+                    fillEntry(g, e.action, e.tile.x, e.tile.y, e.tile.z, r);
                 }
             }
-            g.fillRect(r.x, r.y, r.width, r.height);
+            if (dynamicStore == null || !typeVisible.getOrDefault(ActionType.DYNAMIC_NPC, true)) continue;
+            g.setColor(ghost ? DYN_G : DYN_V);
+            for (DynamicNpcEntry d : dynamicStore.entriesInRect(x0, y0, x1, y1, lo, hi)) {
+                tileToRect(d.x, d.y, r);
+                g.fillRect(r.x, r.y, r.width, r.height);
+            }
         }
-        if (dynamicSupplier != null && typeVisible.getOrDefault(ActionType.DYNAMIC_NPC, true)) {
-            List<DynamicNpcEntry> list = dynamicSupplier.get();
-            if (list != null) {
-                for (DynamicNpcEntry d : list) {
-                    int z = clampZ(d.z);
-                    boolean onActive = (z == currentPlane);
-                    boolean ghost = !onActive && ghostPlane[z];
-                    if (!onActive && !ghost) continue;
-                    Rectangle r = tileToRect(new Tile(d.x, d.y, d.z));
-                    g.setColor(ghost ? cDynG : cDynV);
-                    g.fillRect(r.x, r.y, r.width, r.height);
-                }
+    }
+
+    // image pixel -> world tile coordinate, unclamped so the clip may reach past the map
+    private int worldX(int px) {
+        return Paths.RX_MIN * Paths.REGION_TILE_SIZE + (int) Math.floor(px / (regionW / Paths.REGION_TILE_SIZE));
+    }
+
+    private int worldY(int py) {
+        return (Paths.RY_MIN + rows) * Paths.REGION_TILE_SIZE - 1 - (int) Math.floor(py / (regionH / Paths.REGION_TILE_SIZE));
+    }
+
+    private void fillEntry(Graphics2D g, ActionType action, int x, int y, int tz, Rectangle r) {
+        if (action == null || !typeVisible.getOrDefault(action, true)) return;
+        int z = clampZ(tz);
+        boolean onActive = (z == currentPlane);
+        boolean ghost = !onActive && ghostPlane[z];
+        if (!onActive && !ghost) return;
+        switch (action) {
+            case SPAWN_OBJECT -> g.setColor(ghost ? OBJ_G : OBJ_V);
+            case SPAWN_OVER_OBJECT -> g.setColor(ghost ? OVER_G : OVER_V);
+            case SPAWN_NPC -> g.setColor(ghost ? NPC_G : NPC_V);
+            case DELETE_OBJECT -> g.setColor(ghost ? DEL_G : DEL_V);
+            default -> {
+                return;
             }
         }
+        tileToRect(x, y, r);
+        g.fillRect(r.x, r.y, r.width, r.height);
     }
 
     private static int clampZ(int z) {
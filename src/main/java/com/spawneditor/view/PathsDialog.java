@@ -17,6 +17,7 @@ public class PathsDialog extends JDialog {
     private final JSpinner spRxMax = new JSpinner(new SpinnerNumberModel(Paths.RX_MAX, -10000, 10000, 1));
     private final JSpinner spRyMin = new JSpinner(new SpinnerNumberModel(Paths.RY_MIN, -10000, 10000, 1));
     private final JSpinner spRyMax = new JSpinner(new SpinnerNumberModel(Paths.RY_MAX, -10000, 10000, 1));
+    private final JCheckBox cbJournal = new JCheckBox("Journal spawn edits (write spawns.json when idle)", Paths.JOURNAL_SPAWNS);
     private boolean accepted = false;
 
     public PathsDialog(Window owner) {
@@ -40,7 +41,9 @@ public class PathsDialog extends JDialog {
         p.add(new JLabel("RY_MIN:"), c); c.gridx = 1; p.add(spRyMin, c);
         c.gridx = 2; p.add(Box.createHorizontalStrut(18), c);
         c.gridx = 3; p.add(new JLabel("RY_MAX:"), c); c.gridx = 4; p.add(spRyMax, c);
-        c.gridy++;
+        c.gridy++; c.gridx = 0; c.gridwidth = 5;
+        p.add(cbJournal, c);
+        c.gridy++; c.gridwidth = 1;
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton ok = new JButton("OK");
         JButton cancel = new JButton("Cancel");
@@ -61,6 +64,7 @@ public class PathsDialog extends JDialog {
             }
             Paths.RX_MIN = rxMin; Paths.RX_MAX = rxMax;
             Paths.RY_MIN = ryMin; Paths.RY_MAX = ryMax;
+            Paths.JOURNAL_SPAWNS = cbJournal.isSelected();
             accepted = true;
             dispose();
         });
@@ -100,5 +104,13 @@ public class PathsDialog extends JDialog {
         }
         return null;
     }
-    private File browseJson(Component parent) { return browseFile(parent); }
+    // spawns may also be a directory of region files
+    private File browseJson(Component parent) {
+        JFileChooser ch = new JFileChooser();
+        ch.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        if (ch.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            return ch.getSelectedFile();
+        }
+        return null;
+    }
 }
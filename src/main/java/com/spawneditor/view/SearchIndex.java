@@ -0,0 +1,327 @@
+package com.spawneditor.view;
+
+import com.spawneditor.io.NameTable;
+import com.spawneditor.io.NpcIndex;
+import com.spawneditor.io.ObjectIndex;
+import com.spawneditor.model.ActionType;
+import com.spawneditor.model.DynamicNpcEntry;
+import com.spawneditor.model.SpawnColumns;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.util.TrigramIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+// names and id digits indexed per id; filed on the EDT, searched on the search thread
+final class SearchIndex {
+    enum Kind { OBJECT, NPC, DYNAMIC }
+
+    static final class Hit {
+        final Kind kind;
+        final SpawnEntry entry;
+        final DynamicNpcEntry dynamic;
+        // a row of a read-only dump, kept as its number rather than an entry
+        final SpawnColumns dump;
+        final int row;
+        final long place;
+
+        Hit(Kind kind, SpawnEntry entry, DynamicNpcEntry dynamic, long place) {
+            this(kind, entry, dynamic, null, -1, place);
+        }
+
+        Hit(Kind kind, SpawnColumns dump, int row) {
+            this(kind, null, null, dump, row, row);
+        }
+
+        private Hit(Kind kind, SpawnEntry entry, DynamicNpcEntry dynamic, SpawnColumns dump, int row, long place) {
+            this.kind = kind;
+            this.entry = entry;
+            this.dynamic = dynamic;
+            this.dump = dump;
+            this.row = row;
+            this.place = place;
+        }
+
+        SpawnEntry spawn() {
+            return dump != null ? dump.get(row) : entry;
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+    private static final int BATCH = 256;
+    private static final Comparator<Hit> BY_PLACE = Comparator.comparingLong(h -> h.place);
+
+    // the id an entry was filed under, and its place: entries are filed in list order and new ones
+    // go to the end, as SpawnProject appends them; an update keeps the place
+    private static final class Filed {
+        final Integer id;
+        final long place;
+
+        Filed(Integer id, long place) {
+            this.id = id;
+            this.place = place;
+        }
+    }
+
+    private static final class Names {
+        final NameTable from;
+        final TrigramIndex index = new TrigramIndex();
+
+        Names(NameTable from) {
+            this.from = from;
+            from.forEach((name, id) -> index.add(id, name.toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    private final ObjectIndex objectIndex;
+    private final NpcIndex npcIndex;
+    private final Map<Integer, List<SpawnEntry>> objects = new HashMap<>();
+    private final Map<Integer, List<SpawnEntry>> npcs = new HashMap<>();
+    private final Map<Integer, List<DynamicNpcEntry>> dynamics = new HashMap<>();
+    // spawns without an id show as "null"
+    private final List<SpawnEntry> objectsNoId = new ArrayList<>();
+    private final List<SpawnEntry> npcsNoId = new ArrayList<>();
+    private final Map<SpawnEntry, Filed> spawnFiledAs = new IdentityHashMap<>();
+    private final Map<DynamicNpcEntry, Filed> dynamicFiledAs = new IdentityHashMap<>();
+    private long nextPlace;
+    private final TrigramIndex digits = new TrigramIndex();
+    private final Set<Integer> digitIds = new HashSet<>();
+    // built and swapped by the search thread, outside the lock
+    private volatile Names objectNames, npcNames;
+    // a read-only dump is scanned rather than filed; it never changes once loaded
+    private volatile SpawnColumns dump;
+
+    SearchIndex(ObjectIndex objectIndex, NpcIndex npcIndex) {
+        this.objectIndex = objectIndex;
+        this.npcIndex = npcIndex;
+    }
+
+    synchronized void resetSpawns(List<SpawnEntry> entries) {
+        objects.clear();
+        npcs.clear();
+        objectsNoId.clear();
+        npcsNoId.clear();
+        spawnFiledAs.clear();
+        for (SpawnEntry e : entries) add(e);
+    }
+
+    // only the dump's ids are filed, so their digits can be matched
+    synchronized void resetDump(SpawnColumns dump) {
+        this.dump = dump;
+        if (dump == null) return;
+        SpawnColumns.Row r = dump.row();
+        for (int i = 0; i < dump.size(); i++) {
+            if (r.at(i).hasId()) fileDigits(r.id());
+        }
+    }
+
+    synchronized void resetDynamics(List<DynamicNpcEntry> entries) {
+        dynamics.clear();
+        dynamicFiledAs.clear();
+        for (DynamicNpcEntry d : entries) add(d);
+    }
+
+    synchronized void add(SpawnEntry e) {
+        file(e, nextPlace++);
+    }
+
+    private void file(SpawnEntry e, long place) {
+        if (e.tile == null || spawnFiledAs.containsKey(e)) return;
+        Map<Integer, List<SpawnEntry>> byId = spawnsFor(e.action);
+        if (byId == null) return;
+        spawnFiledAs.put(e, new Filed(e.id, place));
+        if (e.id == null) {
+            (byId == npcs ? npcsNoId : objectsNoId).add(e);
+            return;
+        }
+        byId.computeIfAbsent(e.id, k -> new ArrayList<>()).add(e);
+        fileDigits(e.id);
+    }
+
+    synchronized void remove(SpawnEntry e) {
+        Filed filed = spawnFiledAs.remove(e);
+        if (filed == null) return;
+        Map<Integer, List<SpawnEntry>> byId = spawnsFor(e.action);
+        if (filed.id == null) drop(byId == npcs ? npcsNoId : objectsNoId, e);
+        else drop(byId, filed.id, e);
+    }
+
+    synchronized void update(SpawnEntry e) {
+        Filed filed = spawnFiledAs.get(e);
+        remove(e);
+        file(e, filed != null ? filed.place : nextPlace++);
+    }
+
+    synchronized void add(DynamicNpcEntry d) {
+        file(d, nextPlace++);
+    }
+
+    private void file(DynamicNpcEntry d, long place) {
+        if (dynamicFiledAs.containsKey(d)) return;
+        dynamicFiledAs.put(d, new Filed(d.id, place));
+        dynamics.computeIfAbsent(d.id, k -> new ArrayList<>()).add(d);
+        fileDigits(d.id);
+    }
+
+    synchronized void remove(DynamicNpcEntry d) {
+        Filed filed = dynamicFiledAs.remove(d);
+        if (filed != null) drop(dynamics, filed.id, d);
+    }
+
+    synchronized void update(DynamicNpcEntry d) {
+        Filed filed = dynamicFiledAs.get(d);
+        remove(d);
+        file(d, filed != null ? filed.place : nextPlace++);
+    }
+
+    // false once the hit's entry has been deleted
+    synchronized boolean isCurrent(Hit hit) {
+        if (hit.dump != null) return hit.dump == dump;
+        return hit.dynamic != null ? dynamicFiledAs.containsKey(hit.dynamic) : spawnFiledAs.containsKey(hit.entry);
+    }
+
+    // objects, then NPCs, then dynamic NPCs, each in list order; null if cancelled
+    List<Hit> search(String q, String qDigits, BooleanSupplier cancelled) {
+        int[] byDigits;
+        synchronized (this) {
+            byDigits = qDigits.isEmpty() ? NONE : matches(digits, qDigits);
+        }
+        int[] objectIds = union(q.isEmpty() ? NONE : matches(objectNames(), q), byDigits);
+        int[] npcIds = union(q.isEmpty() ? NONE : matches(npcNames(), q), byDigits);
+        if (cancelled.getAsBoolean()) return null;
+        List<Hit> out = new ArrayList<>();
+        boolean noIdMatches = !q.isEmpty() && "null".contains(q);
+        List<Hit> dumpObjects = new ArrayList<>(), dumpNpcs = new ArrayList<>();
+        SpawnColumns rows = dump;
+        if (rows != null && !scan(rows, objectIds, npcIds, noIdMatches, dumpObjects, dumpNpcs, cancelled)) return null;
+        if (noIdMatches) {
+            synchronized (this) {
+                for (SpawnEntry e : objectsNoId) out.add(new Hit(Kind.OBJECT, e, null, spawnFiledAs.get(e).place));
+            }
+        }
+        if (!collect(out, Kind.OBJECT, objects, objectIds, cancelled)) return null;
+        out.sort(BY_PLACE);
+        out.addAll(dumpObjects);
+        int from = out.size();
+        if (noIdMatches) {
+            synchronized (this) {
+                for (SpawnEntry e : npcsNoId) out.add(new Hit(Kind.NPC, e, null, spawnFiledAs.get(e).place));
+            }
+        }
+        if (!collect(out, Kind.NPC, npcs, npcIds, cancelled)) return null;
+        out.subList(from, out.size()).sort(BY_PLACE);
+        out.addAll(dumpNpcs);
+        from = out.size();
+        if (!collect(out, Kind.DYNAMIC, dynamics, npcIds, cancelled)) return null;
+        out.subList(from, out.size()).sort(BY_PLACE);
+        return out;
+    }
+
+    // the lock is held per batch of ids, so the EDT never waits out a whole search
+    private boolean collect(List<Hit> out, Kind kind, Map<Integer, ? extends List<?>> byId, int[] ids, BooleanSupplier cancelled) {
+        for (int from = 0; from < ids.length; from += BATCH) {
+            if (cancelled.getAsBoolean()) return false;
+            synchronized (this) {
+                for (int i = from, to = Math.min(ids.length, from + BATCH); i < to; i++) {
+                    List<?> filed = byId.get(ids[i]);
+                    if (filed == null) continue;
+                    for (Object o : filed) {
+                        if (kind == Kind.DYNAMIC) out.add(new Hit(kind, null, (DynamicNpcEntry) o, dynamicFiledAs.get(o).place));
+                        else out.add(new Hit(kind, (SpawnEntry) o, null, spawnFiledAs.get(o).place));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // a dump's rows in row order; ids are sorted, so each row is one binary search
+    private static boolean scan(SpawnColumns rows, int[] objectIds, int[] npcIds, boolean noIdMatches,
+                                List<Hit> objects, List<Hit> npcs, BooleanSupplier cancelled) {
+        SpawnColumns.Row r = rows.row();
+        for (int i = 0; i < rows.size(); i++) {
+            if (i % (BATCH * BATCH) == 0 && cancelled.getAsBoolean()) return false;
+            r.at(i);
+            if (!r.hasTile()) continue;
+            ActionType a = r.action();
+            boolean npc = a == ActionType.SPAWN_NPC;
+            if (!npc && a != ActionType.SPAWN_OBJECT && a != ActionType.SPAWN_OVER_OBJECT) continue;
+            boolean hit = r.hasId() ? Arrays.binarySearch(npc ? npcIds : objectIds, r.id()) >= 0 : noIdMatches;
+            if (hit) (npc ? npcs : objects).add(new Hit(npc ? Kind.NPC : Kind.OBJECT, rows, i));
+        }
+        return true;
+    }
+
+    private Map<Integer, List<SpawnEntry>> spawnsFor(ActionType a) {
+        if (a == ActionType.SPAWN_NPC) return npcs;
+        if (a == ActionType.SPAWN_OBJECT || a == ActionType.SPAWN_OVER_OBJECT) return objects;
+        return null;
+    }
+
+    // ids are only ever added: one that falls out of use just finds no entries
+    private void fileDigits(int id) {
+        if (digitIds.add(id)) digits.add(id, Integer.toString(id));
+    }
+
+    private TrigramIndex objectNames() {
+        NameTable table = objectIndex.names();
+        Names names = objectNames;
+        if (names == null || names.from != table) objectNames = names = new Names(table);
+        return names.index;
+    }
+
+    private TrigramIndex npcNames() {
+        NameTable table = npcIndex.names();
+        Names names = npcNames;
+        if (names == null || names.from != table) npcNames = names = new Names(table);
+        return names.index;
+    }
+
+    private static int[] matches(TrigramIndex index, String q) {
+        int[][] found = {new int[16]};
+        int[] n = {0};
+        index.query(q, id -> {
+            if (n[0] == found[0].length) found[0] = Arrays.copyOf(found[0], n[0] * 2);
+            found[0][n[0]++] = id;
+        });
+        return Arrays.copyOf(found[0], n[0]);
+    }
+
+    // sorted, without repeats
+    private static int[] union(int[] a, int[] b) {
+        int[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        Arrays.sort(all);
+        int n = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (n == 0 || all[i] != all[n - 1]) all[n++] = all[i];
+        }
+        return Arrays.copyOf(all, n);
+    }
+
+    private static <T> void drop(Map<Integer, List<T>> byId, int id, T entry) {
+        List<T> list = byId.get(id);
+        if (list == null) return;
+        drop(list, entry);
+        if (list.isEmpty()) byId.remove(id);
+    }
+
+    // by identity, from the end, where recent entries are
+    private static <T> void drop(List<T> list, T entry) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == entry) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.spawneditor.view;
 
+import com.spawneditor.io.NpcIndex;
+import com.spawneditor.io.ObjectIndex;
 import com.spawneditor.model.*;
 import com.spawneditor.util.NumberField;
 
@@ -18,6 +20,7 @@ public class SidebarPanel extends JPanel {
     private final NumberField tfY = new NumberField(6);
     private final NumberField tfZ = new NumberField(2);
     private final NumberField tfId = new NumberField(8);
+    private final JLabel lbName = new JLabel("");
     private final NumberField tfType = new NumberField(3);
     private final NumberField tfRot  = new NumberField(2);
     private final NumberField tfWalk = new NumberField(3);
@@ -38,8 +41,12 @@ public class SidebarPanel extends JPanel {
     private Consumer<SpawnEntry> onDeleteJson;
     private Consumer<DynamicNpcEntry> onDeleteDyn;
     private Consumer<Tile> onDeleteAtTile;
+    private final ObjectIndex objIdx;
+    private final NpcIndex npcIdx;
 
-    public SidebarPanel(com.spawneditor.io.ObjectIndex objIdx, com.spawneditor.io.NpcIndex npcIdx) {
+    public SidebarPanel(ObjectIndex objIdx, NpcIndex npcIdx) {
+        this.objIdx = objIdx;
+        this.npcIdx = npcIdx;
         setLayout(new BorderLayout());
         JPanel form = new JPanel();
         form.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -70,6 +77,7 @@ public class SidebarPanel extends JPanel {
         JPanel idRow = row();
         idRow.add(new JLabel("ID"));
         idRow.add(tfId);
+        idRow.add(lbName);
         form.add(idRow);
         JPanel objRow = row();
         objRow.add(new JLabel("Type"));
@@ -117,6 +125,7 @@ public class SidebarPanel extends JPanel {
                 dirty = true;
                 updateFieldVisibility();
             }
+            updateName();
         });
         updateFieldVisibility();
     }
@@ -144,6 +153,20 @@ public class SidebarPanel extends JPanel {
         tfY.getDocument().addDocumentListener(d);
         tfZ.getDocument().addDocumentListener(d);
         tfId.getDocument().addDocumentListener(d);
+        tfId.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateName();
+            }
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateName();
+            }
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateName();
+            }
+        });
         tfType.getDocument().addDocumentListener(d);
         tfRot.getDocument().addDocumentListener(d);
         tfWalk.getDocument().addDocumentListener(d);
@@ -167,6 +190,25 @@ public class SidebarPanel extends JPanel {
         tfX.setEnabled(true); tfY.setEnabled(true); tfZ.setEnabled(true);
     }
 
+    // the name of whatever the ID field holds; "…" while that list is still loading
+    private void updateName() {
+        ActionType a = (ActionType) cbAction.getSelectedItem();
+        Integer id = tfId.getInt(null);
+        if (id == null || (currentDynEntry == null && a == ActionType.DELETE_OBJECT)) {
+            lbName.setText("");
+            return;
+        }
+        boolean npc = currentDynEntry != null || a == ActionType.SPAWN_NPC || a == ActionType.DYNAMIC_NPC;
+        String name;
+        if (npc) name = !npcIdx.isLoaded() ? "…" : npcIdx.names().get(id);
+        else name = !objIdx.isLoaded() ? "…" : objIdx.names().get(id);
+        lbName.setText(name != null ? name : "(unknown)");
+    }
+
+    public void namesChanged() {
+        updateName();
+    }
+
     private JComponent buildLegend() {
         JPanel p = new JPanel(new GridLayout(0, 1));
         p.setBorder(new EmptyBorder(8, 12, 8, 12));
@@ -278,6 +320,19 @@ public class SidebarPanel extends JPanel {
         markClean();
     }
 
+    // an entry changed elsewhere (another tool, a reload) is shown again unless it is being edited
+    public void spawnsChanged(ChangeBus.Changes<SpawnEntry> c) {
+        if (currentEntry == null || dirty) return;
+        if (c.removed.contains(currentEntry)) clearFields();
+        else if (c.updated.contains(currentEntry)) setEntry(currentEntry);
+    }
+
+    public void dynamicsChanged(ChangeBus.Changes<DynamicNpcEntry> c) {
+        if (currentDynEntry == null || dirty) return;
+        if (c.removed.contains(currentDynEntry)) clearFields();
+        else if (c.updated.contains(currentDynEntry)) setDynamicEntry(currentDynEntry);
+    }
+
     public void clearFields() {
         suppressEvents = true;
         try {
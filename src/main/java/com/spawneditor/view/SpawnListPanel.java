@@ -4,6 +4,9 @@ import com.spawneditor.io.NpcIndex;
 import com.spawneditor.io.ObjectIndex;
 import com.spawneditor.io.DynamicNpcStore;
 import com.spawneditor.model.ActionType;
+import com.spawneditor.model.ChangeBus;
+import com.spawneditor.model.Problem;
+import com.spawneditor.model.SpawnColumns;
 import com.spawneditor.model.SpawnEntry;
 import com.spawneditor.model.SpawnProject;
 import com.spawneditor.model.DynamicNpcEntry;
@@ -13,11 +16,28 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class SpawnListPanel extends JPanel {
+    private static final int PROBLEMS_TAB = 4;
+    private static final String LOADING_NAME = "…";
+    // results are added a chunk per event queue turn; the first is small so rows show at once
+    private static final int FIRST_CHUNK = 200;
+    private static final int CHUNK = 5000;
+    // sizes the rows of a dump's lists, which would otherwise be measured one by one
+    private static final String PROTOTYPE_ROW = "00000 - WWWWWWWWWWWWWWWWWWWWWWWW  @ 0000,0000,0";
+    private static final ExecutorService SEARCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "spawn-editor-search");
+        t.setDaemon(true);
+        return t;
+    });
     private final JTextField tfSearch = new JTextField(18);
     private final JButton btnSearch = new JButton("Search");
     private final JLabel lbSearchHelp = new JLabel(" name or id contains, all categories");
@@ -26,27 +46,39 @@ public class SpawnListPanel extends JPanel {
     private final JList<String> listObjects = new JList<>();
     private final JList<String> listNpcs = new JList<>();
     private final JList<String> listDynamic = new JList<>();
+    private final JList<String> listProblems = new JList<>();
     private final DefaultListModel<String> modelSearch = new DefaultListModel<>();
     private final DefaultListModel<String> modelObjects = new DefaultListModel<>();
     private final DefaultListModel<String> modelNpcs = new DefaultListModel<>();
     private final DefaultListModel<String> modelDynamic = new DefaultListModel<>();
-    private final List<SearchHit> rowsSearch = new ArrayList<>();
+    private final DefaultListModel<String> modelProblems = new DefaultListModel<>();
+    private final List<SearchIndex.Hit> rowsSearch = new ArrayList<>();
     private final List<SpawnEntry> rowsObjects = new ArrayList<>();
     private final List<SpawnEntry> rowsNpcs = new ArrayList<>();
     private final List<DynamicNpcEntry> rowsDynamic = new ArrayList<>();
+    private final List<Problem> rowsProblems = new ArrayList<>();
+    // in place of the two lists above while the spawns are a read-only dump
+    private DumpRows dumpObjects, dumpNpcs;
     private Consumer<SpawnEntry> onSelect;
     private Consumer<DynamicNpcEntry> onSelectDyn;
+    private Consumer<Problem> onSelectProblem;
+    private Supplier<List<Problem>> problemSource;
     private SpawnProject project;
     private final ObjectIndex objectIndex;
     private final NpcIndex npcIndex;
     private final DynamicNpcStore dynStore;
+    private final SearchIndex searchIndex;
     private final Timer searchTimer = new Timer(200, e -> runSearch());
+    private boolean searchLackedNames;
+    // bumped by every keystroke and search; a search or chunk from an older one stops
+    private final AtomicInteger searchGeneration = new AtomicInteger();
 
     public SpawnListPanel(SpawnProject project, ObjectIndex objectIndex, NpcIndex npcIndex, DynamicNpcStore dynStore) {
         this.project = project;
         this.objectIndex = objectIndex;
         this.npcIndex = npcIndex;
         this.dynStore = dynStore;
+        this.searchIndex = new SearchIndex(objectIndex, npcIndex);
         setLayout(new BorderLayout());
         JPanel searchBar = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 6));
         searchBar.add(new JLabel("Search:"));
@@ -59,25 +91,28 @@ public class SpawnListPanel extends JPanel {
         listObjects.setModel(modelObjects);
         listNpcs.setModel(modelNpcs);
         listDynamic.setModel(modelDynamic);
+        listProblems.setModel(modelProblems);
         listSearch.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         listObjects.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         listNpcs.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         listDynamic.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        listProblems.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         tabs.addTab("Search", new JScrollPane(listSearch));
         tabs.addTab("Objects", new JScrollPane(listObjects));
         tabs.addTab("NPCs", new JScrollPane(listNpcs));
         tabs.addTab("Dynamic NPCs", new JScrollPane(listDynamic));
+        tabs.addTab("Problems", new JScrollPane(listProblems));
         add(tabs, BorderLayout.CENTER);
         listObjects.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                int i = listObjects.getSelectedIndex();
-                if (i >= 0 && i < rowsObjects.size() && onSelect != null) onSelect.accept(rowsObjects.get(i));
+                SpawnEntry entry = rowAt(dumpObjects, rowsObjects, listObjects.getSelectedIndex());
+                if (entry != null && onSelect != null) onSelect.accept(entry);
             }
         });
         listNpcs.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                int i = listNpcs.getSelectedIndex();
-                if (i >= 0 && i < rowsNpcs.size() && onSelect != null) onSelect.accept(rowsNpcs.get(i));
+                SpawnEntry entry = rowAt(dumpNpcs, rowsNpcs, listNpcs.getSelectedIndex());
+                if (entry != null && onSelect != null) onSelect.accept(entry);
             }
         });
         listDynamic.addListSelectionListener(e -> {
@@ -86,15 +121,21 @@ public class SpawnListPanel extends JPanel {
                 if (i >= 0 && i < rowsDynamic.size() && onSelectDyn != null) onSelectDyn.accept(rowsDynamic.get(i));
             }
         });
+        listProblems.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                int i = listProblems.getSelectedIndex();
+                if (i >= 0 && i < rowsProblems.size() && onSelectProblem != null) onSelectProblem.accept(rowsProblems.get(i));
+            }
+        });
         listSearch.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int i = listSearch.getSelectedIndex();
                 if (i >= 0 && i < rowsSearch.size()) {
-                    SearchHit hit = rowsSearch.get(i);
-                    if (hit.kind == SearchKind.DYNAMIC && onSelectDyn != null) {
+                    SearchIndex.Hit hit = rowsSearch.get(i);
+                    if (hit.kind == SearchIndex.Kind.DYNAMIC && onSelectDyn != null) {
                         onSelectDyn.accept(hit.dynamic);
-                    } else if (hit.kind != SearchKind.DYNAMIC && onSelect != null) {
-                        onSelect.accept(hit.entry);
+                    } else if (hit.kind != SearchIndex.Kind.DYNAMIC && onSelect != null) {
+                        onSelect.accept(hit.spawn());
                     }
                 }
             }
@@ -116,6 +157,7 @@ public class SpawnListPanel extends JPanel {
                 restartDebounce();
             }
             private void restartDebounce() {
+                searchGeneration.incrementAndGet();
                 searchTimer.restart();
             }
         });
@@ -130,46 +172,266 @@ public class SpawnListPanel extends JPanel {
         this.onSelectDyn = c;
     }
 
+    public void setOnSelectProblem(Consumer<Problem> c) {
+        this.onSelectProblem = c;
+    }
+
+    // where the full list comes from, on the first show and whenever the validator starts over
+    public void setProblemSource(Supplier<List<Problem>> source) {
+        this.problemSource = source;
+        refreshProblems();
+    }
+
     public void refresh() {
         modelObjects.clear(); rowsObjects.clear();
         modelNpcs.clear(); rowsNpcs.clear();
+        searchIndex.resetSpawns(project.getEntries());
+        searchIndex.resetDump(project.dump());
+        showDump(project.dump());
+        // one list event each; row by row, a list with a selection lays itself out again per row
+        List<String> objects = new ArrayList<>(), npcs = new ArrayList<>();
         for (SpawnEntry e : project.getEntries()) {
             if (e.tile == null) continue;
             if (e.action == ActionType.SPAWN_NPC) {
-                String name = (e.id != null) ? npcIndex.nameFor(e.id) : "null";
-                modelNpcs.addElement(fmt(e.id, name, e));
+                npcs.add(label(e));
                 rowsNpcs.add(e);
             } else if (e.action == ActionType.SPAWN_OBJECT || e.action == ActionType.SPAWN_OVER_OBJECT) {
-                String name = (e.id != null) ? objectIndex.nameFor(e.id) : "null";
-                modelObjects.addElement(fmt(e.id, name, e));
+                objects.add(label(e));
                 rowsObjects.add(e);
             }
         }
+        modelObjects.addAll(objects);
+        modelNpcs.addAll(npcs);
         refreshDynamic();
     }
 
+    // a dump is listed by row number, each row labelled as the list draws it
+    private void showDump(SpawnColumns dump) {
+        dumpObjects = dump == null ? null : new DumpRows(dump);
+        dumpNpcs = dump == null ? null : new DumpRows(dump);
+        if (dump != null) {
+            SpawnColumns.Row r = dump.row();
+            for (int i = 0; i < dump.size(); i++) {
+                r.at(i);
+                if (!r.hasTile()) continue;
+                ActionType a = r.action();
+                if (a == ActionType.SPAWN_NPC) dumpNpcs.add(i);
+                else if (a == ActionType.SPAWN_OBJECT || a == ActionType.SPAWN_OVER_OBJECT) dumpObjects.add(i);
+            }
+        }
+        useModel(listObjects, dumpObjects, modelObjects);
+        useModel(listNpcs, dumpNpcs, modelNpcs);
+    }
+
+    private static void useModel(JList<String> list, DumpRows dump, DefaultListModel<String> model) {
+        if (dump != null) {
+            list.setPrototypeCellValue(PROTOTYPE_ROW);
+            list.setModel(dump);
+            return;
+        }
+        list.setPrototypeCellValue(null);
+        list.setFixedCellWidth(-1);
+        list.setFixedCellHeight(-1);
+        list.setModel(model);
+    }
+
+    private static SpawnEntry rowAt(DumpRows dump, List<SpawnEntry> rows, int i) {
+        if (dump != null) return dump.entryAt(i);
+        return i >= 0 && i < rows.size() ? rows.get(i) : null;
+    }
+
+    // only changed rows are touched; new entries go to the end, as SpawnProject appends them
+    public void spawnsChanged(ChangeBus.Changes<SpawnEntry> c) {
+        if (c.reset) {
+            refresh();
+        } else {
+            for (SpawnEntry e : c.removed) {
+                List<SpawnEntry> rows = rowsFor(e.action);
+                int i = rows == null ? -1 : rows.lastIndexOf(e);
+                if (i >= 0) {
+                    rows.remove(i);
+                    modelFor(e.action).remove(i);
+                }
+                dropSearchHit(e);
+                searchIndex.remove(e);
+            }
+            for (SpawnEntry e : c.updated) {
+                searchIndex.update(e);
+                List<SpawnEntry> rows = rowsFor(e.action);
+                int i = rows == null ? -1 : rows.lastIndexOf(e);
+                if (i >= 0) modelFor(e.action).set(i, label(e));
+            }
+            for (SpawnEntry e : c.added) {
+                searchIndex.add(e);
+                List<SpawnEntry> rows = rowsFor(e.action);
+                if (rows == null || e.tile == null) continue;
+                rows.add(e);
+                modelFor(e.action).addElement(label(e));
+            }
+        }
+    }
+
+    public void dynamicsChanged(ChangeBus.Changes<DynamicNpcEntry> c) {
+        if (c.reset) {
+            refreshDynamic();
+        } else {
+            for (DynamicNpcEntry d : c.removed) {
+                int i = rowsDynamic.lastIndexOf(d);
+                if (i >= 0) {
+                    rowsDynamic.remove(i);
+                    modelDynamic.remove(i);
+                }
+                dropSearchHit(d);
+                searchIndex.remove(d);
+            }
+            for (DynamicNpcEntry d : c.updated) {
+                searchIndex.update(d);
+                int i = rowsDynamic.lastIndexOf(d);
+                if (i >= 0) modelDynamic.set(i, dynamicLabel(d));
+            }
+            for (DynamicNpcEntry d : c.added) {
+                searchIndex.add(d);
+                rowsDynamic.add(d);
+                modelDynamic.addElement(dynamicLabel(d));
+            }
+        }
+    }
+
+    public void problemsChanged(ChangeBus.Changes<Problem> c) {
+        if (c.reset) {
+            refreshProblems();
+            return;
+        }
+        for (Problem p : c.removed) {
+            int i = rowsProblems.lastIndexOf(p);
+            if (i >= 0) {
+                rowsProblems.remove(i);
+                modelProblems.remove(i);
+            }
+        }
+        // a refresh may already have picked up problems whose events were still queued
+        for (Problem p : c.added) {
+            if (rowsProblems.contains(p)) continue;
+            rowsProblems.add(p);
+            modelProblems.addElement(p.toString());
+        }
+        updateProblemsTitle();
+    }
+
+    private void refreshProblems() {
+        modelProblems.clear(); rowsProblems.clear();
+        if (problemSource != null) {
+            // one list event for the lot; a big dump can have a great many
+            List<String> labels = new ArrayList<>();
+            for (Problem p : problemSource.get()) {
+                labels.add(p.toString());
+                rowsProblems.add(p);
+            }
+            modelProblems.addAll(labels);
+        }
+        updateProblemsTitle();
+    }
+
+    private void updateProblemsTitle() {
+        tabs.setTitleAt(PROBLEMS_TAB, rowsProblems.isEmpty() ? "Problems" : "Problems (" + rowsProblems.size() + ")");
+    }
+
+    private void dropSearchHit(Object removed) {
+        for (int i = rowsSearch.size() - 1; i >= 0; i--) {
+            SearchIndex.Hit hit = rowsSearch.get(i);
+            if (hit.entry == removed || hit.dynamic == removed) {
+                rowsSearch.remove(i);
+                modelSearch.remove(i);
+            }
+        }
+    }
+
+    private List<SpawnEntry> rowsFor(ActionType a) {
+        if (a == ActionType.SPAWN_NPC) return rowsNpcs;
+        if (a == ActionType.SPAWN_OBJECT || a == ActionType.SPAWN_OVER_OBJECT) return rowsObjects;
+        return null;
+    }
+
+    private DefaultListModel<String> modelFor(ActionType a) {
+        return a == ActionType.SPAWN_NPC ? modelNpcs : modelObjects;
+    }
+
+    private String label(SpawnEntry e) {
+        String name;
+        if (e.id == null) name = "null";
+        else name = e.action == ActionType.SPAWN_NPC ? npcName(e.id) : objectName(e.id);
+        return fmt(e.id, name, e);
+    }
+
+    private String label(SpawnColumns.Row r) {
+        if (!r.hasId()) return "null - null  @ " + r.x() + "," + r.y() + "," + r.z();
+        String name = r.action() == ActionType.SPAWN_NPC ? npcName(r.id()) : objectName(r.id());
+        return r.id() + " - " + name + "  @ " + r.x() + "," + r.y() + "," + r.z();
+    }
+
+    private String dynamicLabel(DynamicNpcEntry d) {
+        return d.id + " - " + npcName(d.id) + "  @ " + d.x + "," + d.y + "," + d.z;
+    }
+
+    // a placeholder until the names have loaded and namesChanged() relabels the rows
+    private String npcName(int id) {
+        return npcIndex.isLoaded() ? npcIndex.nameFor(id) : LOADING_NAME;
+    }
+
+    private String objectName(int id) {
+        return objectIndex.isLoaded() ? objectIndex.nameFor(id) : LOADING_NAME;
+    }
+
+    // relabels every row in place, so selection and scroll position survive
+    public void namesChanged() {
+        for (int i = 0; i < rowsObjects.size(); i++) modelObjects.set(i, label(rowsObjects.get(i)));
+        for (int i = 0; i < rowsNpcs.size(); i++) modelNpcs.set(i, label(rowsNpcs.get(i)));
+        if (dumpObjects != null) dumpObjects.relabel();
+        if (dumpNpcs != null) dumpNpcs.relabel();
+        for (int i = 0; i < rowsDynamic.size(); i++) modelDynamic.set(i, dynamicLabel(rowsDynamic.get(i)));
+        // a search typed before the names arrived could only match ids
+        if (searchLackedNames) {
+            runSearch();
+            return;
+        }
+        for (int i = 0; i < rowsSearch.size(); i++) modelSearch.set(i, searchLabel(rowsSearch.get(i)));
+    }
+
+    private String searchLabel(SearchIndex.Hit hit) {
+        switch (hit.kind) {
+            case OBJECT: return "[object] " + spawnLabel(hit);
+            case NPC: return "[npc] " + spawnLabel(hit);
+            default: return "[dynamic] " + dynamicLabel(hit.dynamic);
+        }
+    }
+
+    private String spawnLabel(SearchIndex.Hit hit) {
+        return hit.dump != null ? label(hit.dump.row().at(hit.row)) : label(hit.entry);
+    }
+
     public void refreshDynamic() {
         modelDynamic.clear(); rowsDynamic.clear();
         if (dynStore == null) return;
+        searchIndex.resetDynamics(dynStore.getEntries());
         for (DynamicNpcEntry d : dynStore.getEntries()) {
-            String name = npcIndex.nameFor(d.id);
-            modelDynamic.addElement(d.id + " - " + name + "  @ " + d.x + "," + d.y + "," + d.z);
+            modelDynamic.addElement(dynamicLabel(d));
             rowsDynamic.add(d);
         }
     }
 
+    // while the problems list is showing it stays put, so it can be walked entry by entry
     public void selectEntry(SpawnEntry entry) {
-        if (entry == null) return;
+        if (entry == null || tabs.getSelectedIndex() == PROBLEMS_TAB) return;
         if (entry.action == ActionType.SPAWN_NPC) {
             tabs.setSelectedIndex(2);
-            int idx = indexOf(rowsNpcs, entry);
+            int idx = dumpNpcs != null ? dumpNpcs.indexOf(entry) : indexOf(rowsNpcs, entry);
             if (idx >= 0) {
                 listNpcs.setSelectedIndex(idx);
                 listNpcs.ensureIndexIsVisible(idx);
             }
         } else {
             tabs.setSelectedIndex(1);
-            int idx = indexOf(rowsObjects, entry);
+            int idx = dumpObjects != null ? dumpObjects.indexOf(entry) : indexOf(rowsObjects, entry);
             if (idx >= 0) {
                 listObjects.setSelectedIndex(idx);
                 listObjects.ensureIndexIsVisible(idx);
@@ -178,7 +440,7 @@ public class SpawnListPanel extends JPanel {
     }
 
     public void selectDynamic(DynamicNpcEntry entry) {
-        if (entry == null) return;
+        if (entry == null || tabs.getSelectedIndex() == PROBLEMS_TAB) return;
         tabs.setSelectedIndex(3);
         int idx = rowsDynamic.indexOf(entry);
         if (idx >= 0) {
@@ -216,73 +478,87 @@ public class SpawnListPanel extends JPanel {
         return idStr + " - " + name + "  @ " + e.tile.x + "," + e.tile.y + "," + e.tile.z;
     }
 
-    private enum SearchKind { OBJECT, NPC, DYNAMIC }
-
-    private static class SearchHit {
-        final SearchKind kind;
-        final SpawnEntry entry;
-        final DynamicNpcEntry dynamic;
-        SearchHit(SearchKind kind, SpawnEntry entry, DynamicNpcEntry dynamic) {
-            this.kind = kind;
-            this.entry = entry;
-            this.dynamic = dynamic;
-        }
-    }
-
     private void runSearch() {
         String qRaw = tfSearch.getText();
         if (qRaw == null) qRaw = "";
         String q = qRaw.trim().toLowerCase(Locale.ROOT);
         String qDigits = extractDigits(qRaw);
+        int gen = searchGeneration.incrementAndGet();
         modelSearch.clear();
         rowsSearch.clear();
-        if (q.isEmpty() && qDigits.isEmpty()) {
-            tabs.setSelectedIndex(0);
-            return;
-        }
-        for (SpawnEntry e : project.getEntries()) {
-            if (e.tile == null) continue;
-            if (e.action == ActionType.SPAWN_OBJECT || e.action == ActionType.SPAWN_OVER_OBJECT) {
-                String name = (e.id != null) ? objectIndex.nameFor(e.id) : "null";
-                String idStr = (e.id != null) ? String.valueOf(e.id) : "";
-                if (matches(name, idStr, q, qDigits)) {
-                    modelSearch.addElement("[object] " + fmt(e.id, name, e));
-                    rowsSearch.add(new SearchHit(SearchKind.OBJECT, e, null));
-                }
-            }
-        }
-        for (SpawnEntry e : project.getEntries()) {
-            if (e.tile == null) continue;
-            if (e.action == ActionType.SPAWN_NPC) {
-                String name = (e.id != null) ? npcIndex.nameFor(e.id) : "null";
-                String idStr = (e.id != null) ? String.valueOf(e.id) : "";
-                if (matches(name, idStr, q, qDigits)) {
-                    modelSearch.addElement("[npc] " + fmt(e.id, name, e));
-                    rowsSearch.add(new SearchHit(SearchKind.NPC, e, null));
-                }
-            }
-        }
-        if (dynStore != null) {
-            for (DynamicNpcEntry d : dynStore.getEntries()) {
-                String name = npcIndex.nameFor(d.id);
-                String idStr = String.valueOf(d.id);
-                if (matches(name, idStr, q, qDigits)) {
-                    modelSearch.addElement("[dynamic] " + d.id + " - " + name + "  @ " + d.x + "," + d.y + "," + d.z);
-                    rowsSearch.add(new SearchHit(SearchKind.DYNAMIC, null, d));
-                }
-            }
-        }
+        searchLackedNames = !q.isEmpty() && !(npcIndex.isLoaded() && objectIndex.isLoaded());
         tabs.setSelectedIndex(0);
-        if (modelSearch.getSize() > 0) {
+        if (q.isEmpty() && qDigits.isEmpty()) return;
+        SEARCHER.execute(() -> {
+            if (gen != searchGeneration.get()) return;
+            List<SearchIndex.Hit> hits = searchIndex.search(q, qDigits, () -> gen != searchGeneration.get());
+            if (hits != null) EventQueue.invokeLater(() -> showHits(gen, hits, 0));
+        });
+    }
+
+    // labelled on the EDT, where entries are edited; each chunk is one list event
+    private void showHits(int gen, List<SearchIndex.Hit> hits, int from) {
+        if (gen != searchGeneration.get()) return;
+        int to = Math.min(hits.size(), from == 0 ? FIRST_CHUNK : from + CHUNK);
+        boolean first = rowsSearch.isEmpty();
+        List<String> labels = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            SearchIndex.Hit hit = hits.get(i);
+            if (!searchIndex.isCurrent(hit)) continue;
+            labels.add(searchLabel(hit));
+            rowsSearch.add(hit);
+        }
+        modelSearch.addAll(labels);
+        if (first && !rowsSearch.isEmpty()) {
             listSearch.setSelectedIndex(0);
             listSearch.ensureIndexIsVisible(0);
         }
+        if (to < hits.size()) EventQueue.invokeLater(() -> showHits(gen, hits, to));
     }
 
-    private static boolean matches(String name, String idStr, String q, String qDigits) {
-        boolean nameMatch = !q.isEmpty() && name.toLowerCase(Locale.ROOT).contains(q);
-        boolean idMatch = !qDigits.isEmpty() && idStr.contains(qDigits);
-        return nameMatch || idMatch;
+    // row numbers into a read-only dump, in row order
+    private final class DumpRows extends AbstractListModel<String> {
+        private final SpawnColumns columns;
+        private final SpawnColumns.Row row;
+        private int[] rows = new int[1024];
+        private int size;
+
+        DumpRows(SpawnColumns columns) {
+            this.columns = columns;
+            this.row = columns.row();
+        }
+
+        void add(int r) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = r;
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int i) {
+            return label(row.at(rows[i]));
+        }
+
+        SpawnEntry entryAt(int i) {
+            return i >= 0 && i < size ? columns.get(rows[i]) : null;
+        }
+
+        int indexOf(SpawnEntry target) {
+            for (int i = 0; i < size; i++) {
+                row.at(rows[i]);
+                if (row.action() == target.action && row.x() == target.tile.x && row.y() == target.tile.y && row.z() == target.tile.z) return i;
+            }
+            return -1;
+        }
+
+        // labels are made as rows are drawn, so new names only need a repaint
+        void relabel() {
+            if (size > 0) fireContentsChanged(this, 0, size - 1);
+        }
     }
 
     private static String extractDigits(String s) {
@@ -16,6 +16,8 @@ public class ToolbarPanel extends JToolBar {
     private final JButton btnRefresh = new JButton("Refresh");
     private final JButton btnSaveAs = new JButton("Save As");
     private final JButton btnPaths = new JButton("Paths");
+    private final JButton btnUndo = new JButton("Undo");
+    private final JButton btnRedo = new JButton("Redo");
     private final JCheckBox chkGrid = new JCheckBox("Grid", true);
     private final JSlider zoom = new JSlider(20, 1600, 100);
     private final JLabel lbZoom = new JLabel("100%");
@@ -32,6 +34,8 @@ public class ToolbarPanel extends JToolBar {
     private Consumer<ActionEvent> onRefresh;
     private Consumer<ActionEvent> onSaveAs;
     private Consumer<ActionEvent> onPaths;
+    private Consumer<ActionEvent> onUndo;
+    private Consumer<ActionEvent> onRedo;
 
     public ToolbarPanel() {
         super("Toolbar", JToolBar.HORIZONTAL);
@@ -40,6 +44,12 @@ public class ToolbarPanel extends JToolBar {
         add(btnSaveAs);
         add(btnPaths);
         addSeparator();
+        add(btnUndo);
+        add(btnRedo);
+        btnUndo.setToolTipText("Undo (Ctrl+Z)");
+        btnRedo.setToolTipText("Redo (Ctrl+Y)");
+        setUndoEnabled(false, false);
+        addSeparator();
         add(chkGrid);
         add(new JLabel(" Zoom: "));
         add(zoom);
@@ -91,6 +101,12 @@ public class ToolbarPanel extends JToolBar {
         btnPaths.addActionListener(e -> {
             if (onPaths != null) onPaths.accept(e);
         });
+        btnUndo.addActionListener(e -> {
+            if (onUndo != null) onUndo.accept(e);
+        });
+        btnRedo.addActionListener(e -> {
+            if (onRedo != null) onRedo.accept(e);
+        });
     }
 
     public void setOnRefresh(Consumer<ActionEvent> c) {
@@ -105,6 +121,19 @@ public class ToolbarPanel extends JToolBar {
         this.onPaths = c;
     }
 
+    public void setOnUndo(Consumer<ActionEvent> c) {
+        this.onUndo = c;
+    }
+
+    public void setOnRedo(Consumer<ActionEvent> c) {
+        this.onRedo = c;
+    }
+
+    public void setUndoEnabled(boolean undo, boolean redo) {
+        btnUndo.setEnabled(undo);
+        btnRedo.setEnabled(redo);
+    }
+
     private void emitTypeVisibility() {
         Map<ActionType, Boolean> m = new EnumMap<>(ActionType.class);
         for (Map.Entry<ActionType, JCheckBox> e : typeChecks.entrySet()) {
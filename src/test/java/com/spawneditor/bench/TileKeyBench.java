@@ -0,0 +1,95 @@
+package com.spawneditor.bench;
+
+import com.spawneditor.model.ActionType;
+import com.spawneditor.model.SpawnEntry;
+import com.spawneditor.model.SpawnProject;
+import com.spawneditor.model.Tile;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+// Objects.hash-keyed Tile lookups against SpawnProject's TileKey index; args: [entries]
+public final class TileKeyBench {
+    private static final int LOOKUPS = 2_000_000;
+    private static final int ROUNDS = 5;
+
+    private static final class BoxedTile {
+        final int x, y, z;
+
+        BoxedTile(int x, int y, int z) {
+            this.x = x; this.y = y; this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BoxedTile)) return false;
+            BoxedTile t = (BoxedTile) o;
+            return x == t.x && y == t.y && z == t.z;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(x, y, z);
+        }
+    }
+
+    private TileKeyBench() {}
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random r = new Random(42);
+        int[] xs = new int[n], ys = new int[n], zs = new int[n];
+        Map<BoxedTile, List<Integer>> boxed = new HashMap<>();
+        SpawnProject project = new SpawnProject();
+        List<SpawnEntry> entries = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            xs[i] = 2048 + r.nextInt(2048);
+            ys[i] = 2048 + r.nextInt(2048);
+            zs[i] = r.nextInt(4);
+            boxed.computeIfAbsent(new BoxedTile(xs[i], ys[i], zs[i]), k -> new ArrayList<>(1)).add(i);
+            SpawnEntry e = new SpawnEntry();
+            e.action = ActionType.SPAWN_NPC;
+            e.tile = new Tile(xs[i], ys[i], zs[i]);
+            entries.add(e);
+        }
+        project.getEntries().addAll(entries);
+        Tile at = new Tile();
+        int[] probe = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) probe[i] = r.nextInt(n);
+        System.out.println(n + " entries, " + LOOKUPS + " lookups a round");
+        for (int round = 1; round <= ROUNDS; round++) {
+            report(round, "Tile + Objects.hash", i -> {
+                List<Integer> l = boxed.get(new BoxedTile(xs[i], ys[i], zs[i]));
+                return l == null ? 0 : 1;
+            }, probe);
+            report(round, "SpawnProject.findFirstAt", i -> {
+                at.x = xs[i]; at.y = ys[i]; at.z = zs[i];
+                return project.findFirstAt(at).isPresent() ? 1 : 0;
+            }, probe);
+        }
+    }
+
+    private static void report(int round, String name, IntUnaryOperator lookup, int[] probe) {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long found = 0;
+        for (int i : probe) found += lookup.applyAsInt(i);
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        System.out.printf("round %d  %-24s %6.1f ns/lookup  %6.1f bytes/lookup  (%d found)%n",
+                round, name, (double) nanos / probe.length, (double) bytes / probe.length, found);
+    }
+
+    // -1 where the JVM doesn't count allocations per thread
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}